@@ -0,0 +1,40 @@
+package com.tungtung.hello;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+// The MySQL schema the database benchmarks run against, from -Dtungtung.bench.mysql-url,
+// -user and -password (JMH passes them on to its forks). Seed TRUNCATEs Users and the
+// rest, so this must be a scratch schema with the app's tables already created. It's
+// seeded only while Users is empty, so every fork and @Param reuses one dataset;
+// TRUNCATE Users to reseed at another scale.
+final class BenchDatabase {
+
+    private BenchDatabase() {
+    }
+
+    static JdbcTemplate seeded(double defaultScale) {
+        String url = System.getProperty("tungtung.bench.mysql-url");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("set -Dtungtung.bench.mysql-url to a scratch schema, e.g. jdbc:mysql://localhost:3306/TungTungBench");
+        }
+        JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(url,
+            System.getProperty("tungtung.bench.mysql-user", "root"), System.getProperty("tungtung.bench.mysql-password", "")));
+        if (jdbc.queryForObject("SELECT COUNT(*) FROM Users", Integer.class) == 0) {
+            double scale = Double.parseDouble(System.getProperty("tungtung.bench.seed-scale", String.valueOf(defaultScale)));
+            // populate() prints a line per phase
+            PrintStream stdout = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                new Seed(jdbc, scale, 42).populate();
+            } finally {
+                System.setOut(stdout);
+            }
+            jdbc.execute("ANALYZE TABLE Users");
+        }
+        return jdbc;
+    }
+}
@@ -0,0 +1,48 @@
+package com.tungtung.hello;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Login input classification and phone normalization, over the formats Seed writes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactInfoBenchmark {
+
+    private static final String[] INPUTS = {
+        "(555) 123-4567",
+        "555-123-4567",
+        "555.123.4567",
+        "+1 555 123 4567",
+        "5551234567",
+        "jane.doe.42@example.com",
+        "not-an-email",
+        "j@x.io",
+    };
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void isEmail(Blackhole blackhole) {
+        for (String input : INPUTS) blackhole.consume(ContactInfo.isEmail(input));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void normalizePhoneNumber(Blackhole blackhole) {
+        for (String input : INPUTS) blackhole.consume(ContactInfo.normalizePhoneNumber(input));
+    }
+}
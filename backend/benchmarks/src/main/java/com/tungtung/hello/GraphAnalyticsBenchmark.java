@@ -0,0 +1,55 @@
+package com.tungtung.hello;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// GraphAnalytics.compute on a loaded snapshot of a Seed dataset (seed-scale 2000 by
+// default) at several pool sizes; compare the scores for the speedup. Needs MySQL; see
+// BenchDatabase:
+//   java -Dtungtung.bench.mysql-url=jdbc:mysql://localhost:3306/TungTungBench
+//     -Dtungtung.bench.mysql-password=... -jar target/benchmarks.jar GraphAnalytics -p parallelism=1,2,4,8,16
+// GraphAnalyticsBenchmarkTests checks every parallelism gives the same answer.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GraphAnalyticsBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private GraphAnalytics.Snapshot snapshot;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        snapshot = GraphAnalytics.load(BenchDatabase.seeded(2000));
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public GraphAnalytics.Result compute() {
+        return GraphAnalytics.compute(snapshot, pool);
+    }
+}
@@ -0,0 +1,49 @@
+package com.tungtung.hello;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The legacy SHA-256 hash (still used for Seed and for checking old accounts), its hex
+// encoding, and one PBKDF2 derivation at a fixed iteration count. PasswordHasher calibrates
+// its real count at startup, so pbkdf2 here tracks the per-iteration cost.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HasherBenchmark {
+
+    @Param({"password", "correct horse battery staple"})
+    public String password;
+
+    private final byte[] digest = new byte[32];
+    private final byte[] salt = new byte[16];
+
+    @Benchmark
+    public String hashPassword() throws NoSuchAlgorithmException {
+        return Hasher.hashPassword(password);
+    }
+
+    @Benchmark
+    public String toHex() {
+        return Hasher.toHex(digest);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public byte[] pbkdf2() {
+        return PasswordHasher.derive(password, salt, 10_000);
+    }
+}
@@ -0,0 +1,48 @@
+package com.tungtung.hello;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Building the /listings/filterAndSort fallback SQL, from the bare query to every filter at once
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingFilterQueryBenchmark {
+
+    private static final BestMatchWeights WEIGHTS = new BestMatchWeights(75, 10, -0.0144, -0.008993, 275);
+
+    @Param({"plain", "radius", "categories", "search", "all"})
+    public String filters;
+
+    private List<String> categories;
+    private String search;
+    private Double radiusKm;
+
+    @Setup
+    public void setUp() {
+        boolean all = filters.equals("all");
+        categories = all || filters.equals("categories") ? List.of("Ahri", "Garen", "Lux") : null;
+        search = all || filters.equals("search") ? "garden fence" : "";
+        radiusKm = all || filters.equals("radius") ? 25.0 : null;
+    }
+
+    @Benchmark
+    public ListingFilterQuery build() {
+        return ListingFilterQuery.build(categories, "open", search, "best-match", 42, 43.47, -80.54, radiusKm, 20, WEIGHTS);
+    }
+}
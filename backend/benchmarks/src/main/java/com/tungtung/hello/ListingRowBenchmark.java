@@ -0,0 +1,138 @@
+package com.tungtung.hello;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Listing results as typed ListingRows versus the column maps queryForList used to
+// return: mapping rows off an in-memory H2 table, and serializing them the way Spring MVC does
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingRowBenchmark {
+
+    @Param({"20", "1000"})
+    public int rows;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private ObjectMapper json;
+    private String selectAll;
+    private String selectSummary;
+    private List<Map<String, Object>> mapRows;
+    private List<ListingRow> typedRows;
+    private List<ListingRow> summaryRows;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:listings;MODE=MySQL;DATABASE_TO_LOWER=TRUE", true);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS Listings");
+        jdbc.execute("""
+            CREATE TABLE Listings (
+              listid INT PRIMARY KEY,
+              listing_name VARCHAR(100) NOT NULL,
+              description TEXT,
+              capacity INT DEFAULT 1,
+              price DECIMAL(10,2) NOT NULL,
+              duration INT NOT NULL,
+              address VARCHAR(255) NOT NULL,
+              longitude DECIMAL(9,6) NOT NULL,
+              latitude DECIMAL(9,6) NOT NULL,
+              posting_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+              deadline TIMESTAMP,
+              status VARCHAR(20),
+              assigned_count INT NOT NULL DEFAULT 0,
+              version INT NOT NULL DEFAULT 0
+            )""");
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++) {
+            batch.add(new Object[] {
+                i,
+                "Listing " + i,
+                // About the length of the faker quotes Seed writes
+                "Help needed with a small job around the house, tools provided. ".repeat(1 + random.nextInt(3)),
+                1 + random.nextInt(3),
+                BigDecimal.valueOf(300 + random.nextInt(15000), 2),
+                1 + random.nextInt(4),
+                (100 + random.nextInt(900)) + " King St W, Waterloo, ON",
+                BigDecimal.valueOf(-80_540_000 + random.nextInt(100_000), 6),
+                BigDecimal.valueOf(43_460_000 + random.nextInt(100_000), 6),
+                random.nextInt(10) == 0 ? null : new Timestamp(1_800_000_000_000L + random.nextInt(1_000_000_000)),
+                "open"
+            });
+        }
+        jdbc.batchUpdate("INSERT INTO Listings (listid, listing_name, description, capacity, price, duration, address,"
+            + " longitude, latitude, deadline, status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", batch);
+
+        json = Jackson2ObjectMapperBuilder.json().build();
+        selectAll = ListingRow.select(ListingRow.ALL);
+        selectSummary = ListingRow.select(ListingRow.SUMMARY);
+        mapRows = mapAsColumnMaps();
+        typedRows = mapAsListingRows();
+        summaryRows = mapSummaryRows();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapAsColumnMaps() {
+        return jdbc.queryForList("SELECT * FROM Listings");
+    }
+
+    @Benchmark
+    public List<ListingRow> mapAsListingRows() {
+        return jdbc.query(selectAll, ListingRow.mapper(ListingRow.ALL));
+    }
+
+    @Benchmark
+    public List<ListingRow> mapSummaryRows() {
+        return jdbc.query(selectSummary, ListingRow.mapper(ListingRow.SUMMARY));
+    }
+
+    @Benchmark
+    public byte[] serializeColumnMaps() throws JsonProcessingException {
+        return json.writeValueAsBytes(mapRows);
+    }
+
+    @Benchmark
+    public byte[] serializeListingRows() throws JsonProcessingException {
+        return json.writeValueAsBytes(typedRows);
+    }
+
+    @Benchmark
+    public byte[] serializeSummaryRows() throws JsonProcessingException {
+        return json.writeValueAsBytes(summaryRows);
+    }
+}
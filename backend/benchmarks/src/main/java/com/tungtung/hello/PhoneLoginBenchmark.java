@@ -0,0 +1,71 @@
+package com.tungtung.hello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Phone login's old REPLACE(...) scan against the phone_normalized point lookup, on a
+// Seed dataset of about 1M users by default (seed-scale 20000). Needs MySQL; see
+// BenchDatabase:
+//   java -Dtungtung.bench.mysql-url=jdbc:mysql://localhost:3306/TungTungBench
+//     -Dtungtung.bench.mysql-password=... -jar target/benchmarks.jar PhoneLogin
+// PhoneLoginBenchmarkTests checks both queries find the same accounts.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PhoneLoginBenchmark {
+
+    private static final String SCAN_SQL = "SELECT uid, password FROM Users WHERE REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(phone_number, ' ', ''), '-', ''), '(', ''), ')', ''), '+', '') = ?";
+    private static final String INDEXED_SQL = "SELECT uid, password FROM Users WHERE phone_normalized = ?";
+    private static final int PHONES = 2000;
+
+    private JdbcTemplate jdbc;
+    private List<String> phones;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jdbc = BenchDatabase.seeded(20000);
+        int users = jdbc.queryForObject("SELECT COUNT(*) FROM Users", Integer.class);
+        Random random = new Random(42);
+        phones = new ArrayList<>();
+        while (phones.size() < PHONES) {
+            int uid = 1 + random.nextInt(users);
+            phones.add(ContactInfo.normalizePhoneNumber(jdbc.queryForObject("SELECT phone_number FROM Users WHERE uid = ?", String.class, uid)));
+        }
+    }
+
+    private String nextPhone() {
+        String phone = phones.get(next);
+        next = (next + 1) % phones.size();
+        return phone;
+    }
+
+    @Benchmark
+    public Map<String, Object> scan() {
+        return jdbc.queryForMap(SCAN_SQL, nextPhone());
+    }
+
+    @Benchmark
+    public Map<String, Object> indexed() {
+        return jdbc.queryForMap(INDEXED_SQL, nextPhone());
+    }
+}
@@ -0,0 +1,81 @@
+package com.tungtung.hello;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Seed's generation side: planning, faker rows and multi-row INSERT assembly for a whole
+// dataset, with the statements themselves dropped so the database isn't what's measured.
+// Rows are generated on Seed's own pool, so gc.alloc.rate.norm (which only sees the
+// benchmark thread) undercounts; gc.count and gc.time reflect the whole run.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SeedBenchmark {
+
+    // 50 and 500 users
+    @Param({"1", "10"})
+    public double scale;
+
+    private PrintStream stdout;
+
+    // Accepts every statement Seed issues and does nothing with it
+    static final class DiscardingJdbcTemplate extends JdbcTemplate {
+
+        @Override
+        public void execute(String sql) {
+        }
+
+        @Override
+        public int[] batchUpdate(String... sql) {
+            return new int[sql.length];
+        }
+
+        @Override
+        public int update(String sql) {
+            return 0;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            return args.length;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // populate() prints a line per phase
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public Seed populate() {
+        Seed seed = new Seed(new DiscardingJdbcTemplate(), scale, 42);
+        seed.populate();
+        return seed;
+    }
+}
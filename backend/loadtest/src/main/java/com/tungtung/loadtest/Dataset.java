@@ -0,0 +1,89 @@
+package com.tungtung.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Ids the workload draws from, read off the running instance's NDJSON exports so the
+// harness needs nothing but the base URL
+public class Dataset {
+
+    public record User(int uid, String email) {}
+
+    public record Listing(int listid, String status, double latitude, double longitude) {}
+
+    // A completed listing with the pair the review triggers accept: poster reviews taker
+    public record Completed(int listid, int poster, int taker) {}
+
+    public final List<User> users = new ArrayList<>();
+    public final List<Listing> listings = new ArrayList<>();
+    public final List<Listing> open = new ArrayList<>();
+    public final List<Completed> completed = new ArrayList<>();
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static Dataset load(HttpClient http, String baseUrl, int maxUsers, int maxListings)
+        throws IOException, InterruptedException {
+        Dataset dataset = new Dataset();
+        stream(http, baseUrl + "/info/users?format=ndjson&fields=uid,email", maxUsers,
+            row -> dataset.users.add(new User(row.get("uid").asInt(), row.get("email").asText())));
+        stream(http, baseUrl + "/info/listings?format=ndjson&fields=listid,status,latitude,longitude", maxListings, row -> {
+            Listing listing = new Listing(row.get("listid").asInt(), row.get("status").asText(),
+                row.get("latitude").asDouble(), row.get("longitude").asDouble());
+            dataset.listings.add(listing);
+            if (listing.status().equals("open")) dataset.open.add(listing);
+        });
+
+        Map<Integer, Listing> byId = new HashMap<>();
+        for (Listing listing : dataset.listings) byId.put(listing.listid(), listing);
+        Map<Integer, Integer> posters = new HashMap<>();
+        stream(http, baseUrl + "/postings?format=ndjson", Integer.MAX_VALUE, row -> {
+            int listid = row.get("listid").asInt();
+            Listing listing = byId.get(listid);
+            if (listing != null && listing.status().equals("completed")) posters.put(listid, row.get("uid").asInt());
+        });
+        stream(http, baseUrl + "/assignments?format=ndjson", Integer.MAX_VALUE, row -> {
+            Integer poster = posters.get(row.get("listid").asInt());
+            int taker = row.get("uid").asInt();
+            if (poster != null && poster != taker) dataset.completed.add(new Completed(row.get("listid").asInt(), poster, taker));
+        });
+
+        if (dataset.users.isEmpty() || dataset.listings.isEmpty()) {
+            throw new IllegalStateException("No users or listings at " + baseUrl + "; seed it first (loadtest.seed-scale)");
+        }
+        return dataset;
+    }
+
+    private static void stream(HttpClient http, String url, int limit, Consumer<JsonNode> rowConsumer)
+        throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofMinutes(5)).GET().build();
+        HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            if (response.statusCode() != 200) {
+                throw new IOException("GET " + url + " returned " + response.statusCode());
+            }
+            int count = 0;
+            String line;
+            while (count < limit && (line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                rowConsumer.accept(JSON.readTree(line));
+                count++;
+            }
+        }
+    }
+}
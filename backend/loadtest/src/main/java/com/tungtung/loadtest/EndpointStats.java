@@ -0,0 +1,58 @@
+package com.tungtung.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+// Latency histogram and outcome counts for one operation. Latency is recorded in
+// microseconds from the request's scheduled start (not when it was actually sent), so
+// a stalled server shows up as latency instead of quietly lowering the request rate.
+public class EndpointStats {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+    final LongAdder ok = new LongAdder();
+    // 4xx: the API said no (a full listing, a duplicate assign), which the mix expects
+    final LongAdder rejected = new LongAdder();
+    // 5xx, timeouts and connection failures
+    final LongAdder errors = new LongAdder();
+    // Never sent because max-in-flight was reached
+    final LongAdder dropped = new LongAdder();
+
+    void record(long scheduledNanos, long completedNanos, int status) {
+        latency.recordValue(Math.min(HIGHEST_MICROS, Math.max(0, (completedNanos - scheduledNanos) / 1000)));
+        if (status >= 200 && status < 400) ok.increment();
+        else if (status >= 400 && status < 500) rejected.increment();
+        else errors.increment();
+    }
+
+    void recordFailure(long scheduledNanos, long completedNanos) {
+        latency.recordValue(Math.min(HIGHEST_MICROS, Math.max(0, (completedNanos - scheduledNanos) / 1000)));
+        errors.increment();
+    }
+
+    public long completed() {
+        return ok.sum() + rejected.sum() + errors.sum();
+    }
+
+    public long attempted() {
+        return completed() + dropped.sum();
+    }
+
+    // Errors and drops over everything scheduled
+    public double errorRate() {
+        long attempted = attempted();
+        return attempted == 0 ? 0 : (double) (errors.sum() + dropped.sum()) / attempted;
+    }
+
+    public double percentileMillis(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public double maxMillis() {
+        return latency.getMaxValue() / 1000.0;
+    }
+}
@@ -0,0 +1,153 @@
+package com.tungtung.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load test: requests arrive on a Poisson schedule at a fixed rate no matter how
+// fast the server answers, latency is measured from each request's scheduled start, and
+// the run fails (exit 1) if any operation breaks its thresholds in loadtest.properties.
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.load();
+        String baseUrl = config.string("base-url").replaceAll("/+$", "");
+        long randomSeed = config.number("random-seed");
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        double seedScale = config.decimal("seed-scale");
+        if (seedScale > 0) {
+            System.out.printf("Seeding %s at scale %s%n", baseUrl, seedScale);
+            HttpRequest seed = HttpRequest.newBuilder(URI.create(baseUrl + "/db/seed?scale=" + seedScale + "&seed=" + randomSeed))
+                .timeout(Duration.ofHours(1)).GET().build();
+            HttpResponse<String> response = http.send(seed, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200 || !response.body().contains("true")) {
+                throw new IllegalStateException("Seeding failed: " + response.statusCode() + " " + response.body());
+            }
+        }
+
+        Dataset dataset = Dataset.load(http, baseUrl, config.integer("dataset.max-users"), config.integer("dataset.max-listings"));
+        System.out.printf("Dataset: %d users, %d listings (%d open), %d completed assignments%n",
+            dataset.users.size(), dataset.listings.size(), dataset.open.size(), dataset.completed.size());
+
+        Workload workload = new Workload(baseUrl, Duration.ofMillis(config.number("request-timeout-ms")), dataset,
+            config.mix(), config.integer("hot-listings"), randomSeed);
+        double rate = config.decimal("rate");
+        long warmupNanos = TimeUnit.SECONDS.toNanos(config.number("warmup-seconds"));
+        long durationNanos = TimeUnit.SECONDS.toNanos(config.number("duration-seconds"));
+
+        Map<String, EndpointStats> stats = run(http, workload, rate, warmupNanos, durationNanos,
+            config.integer("max-in-flight"), new SplittableRandom(randomSeed));
+
+        List<String> violations = report(config, stats, rate, durationNanos);
+        if (!violations.isEmpty()) {
+            System.out.println();
+            System.out.println("FAILED thresholds:");
+            violations.forEach(v -> System.out.println("  " + v));
+            System.exit(1);
+        }
+        System.out.println();
+        System.out.println("All thresholds met");
+    }
+
+    // Requests scheduled during the warmup are sent but not recorded
+    static Map<String, EndpointStats> run(HttpClient http, Workload workload, double rate, long warmupNanos,
+                                          long durationNanos, int maxInFlight, SplittableRandom random)
+        throws InterruptedException {
+        Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+        for (String operation : workload.operations()) stats.put(operation, new EndpointStats());
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long scheduled = start;
+        while (true) {
+            // Exponential gaps give Poisson arrivals; 1 - nextDouble() keeps log() off zero
+            scheduled += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (scheduled >= end) break;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+
+            Workload.Call call = workload.next(random);
+            boolean measured = scheduled >= measureFrom;
+            EndpointStats endpoint = stats.computeIfAbsent(call.operation(), k -> new EndpointStats());
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                if (measured) endpoint.dropped.increment();
+                continue;
+            }
+            long intended = scheduled;
+            http.sendAsync(call.request(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long now = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (failure != null) {
+                    if (measured) endpoint.recordFailure(intended, now);
+                    return;
+                }
+                call.onStatus().accept(response.statusCode());
+                if (measured) endpoint.record(intended, now, response.statusCode());
+            });
+        }
+
+        // Let stragglers finish (or time out) so they're counted
+        while (inFlight.get() > 0) Thread.sleep(10);
+        return stats;
+    }
+
+    static List<String> report(LoadTestConfig config, Map<String, EndpointStats> stats, double rate, long durationNanos) {
+        double seconds = durationNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-10s %8s %9s %8s %6s %6s %6s %9s %9s %9s %9s %9s%n",
+            "operation", "count", "req/s", "ok", "4xx", "err", "drop", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        List<String> violations = new ArrayList<>();
+        long completed = 0;
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(stats).entrySet()) {
+            String operation = entry.getKey();
+            EndpointStats endpoint = entry.getValue();
+            completed += endpoint.completed();
+            if (endpoint.attempted() == 0) continue;
+            System.out.printf("%-10s %8d %9.1f %8d %6d %6d %6d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                operation, endpoint.completed(), endpoint.completed() / seconds,
+                endpoint.ok.sum(), endpoint.rejected.sum(), endpoint.errors.sum(), endpoint.dropped.sum(),
+                endpoint.percentileMillis(50), endpoint.percentileMillis(90), endpoint.percentileMillis(99),
+                endpoint.percentileMillis(99.9), endpoint.maxMillis());
+
+            check(violations, operation, "p50-ms", endpoint.percentileMillis(50), config.threshold(operation, "p50-ms"));
+            check(violations, operation, "p99-ms", endpoint.percentileMillis(99), config.threshold(operation, "p99-ms"));
+            check(violations, operation, "error-rate", endpoint.errorRate(), config.threshold(operation, "error-rate"));
+        }
+
+        double offered = rate * seconds;
+        double ratio = offered == 0 ? 1 : completed / offered;
+        System.out.printf("%nThroughput: %.1f req/s completed of %.1f req/s offered (%.1f%%)%n",
+            completed / seconds, rate, ratio * 100);
+        double min = config.decimal("threshold.min-throughput-ratio");
+        if (ratio < min) {
+            violations.add(String.format("throughput ratio %.3f < %.3f", ratio, min));
+        }
+        return violations;
+    }
+
+    private static void check(List<String> violations, String operation, String metric, double actual, Double limit) {
+        if (limit != null && actual > limit) {
+            violations.add(String.format("%s %s %.3f > %.3f", operation, metric, actual, limit));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.tungtung.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// loadtest.properties from the classpath, then an optional -Dloadtest.config file, then
+// -Dloadtest.<key> system properties, each overriding the last
+public class LoadTestConfig {
+
+    private static final String PREFIX = "loadtest.";
+
+    private final Properties properties = new Properties();
+
+    public static LoadTestConfig load() throws IOException {
+        LoadTestConfig config = new LoadTestConfig();
+        try (InputStream defaults = LoadTestConfig.class.getResourceAsStream("/loadtest.properties")) {
+            if (defaults != null) config.properties.load(defaults);
+        }
+        String file = System.getProperty(PREFIX + "config");
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(Path.of(file))) {
+                config.properties.load(reader);
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX) && !name.equals(PREFIX + "config")) {
+                config.properties.setProperty(name.substring(PREFIX.length()), System.getProperty(name));
+            }
+        }
+        return config;
+    }
+
+    public String string(String key) {
+        String value = properties.getProperty(key);
+        if (value == null) throw new IllegalArgumentException("Missing setting " + key);
+        return value.trim();
+    }
+
+    public int integer(String key) {
+        return Integer.parseInt(string(key));
+    }
+
+    public long number(String key) {
+        return Long.parseLong(string(key));
+    }
+
+    public double decimal(String key) {
+        return Double.parseDouble(string(key));
+    }
+
+    // Operation name -> weight, for every mix.* key with a positive weight
+    public Map<String, Integer> mix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        properties.stringPropertyNames().stream().filter(k -> k.startsWith("mix.")).sorted().forEach(key -> {
+            int weight = integer(key);
+            if (weight > 0) mix.put(key.substring("mix.".length()), weight);
+        });
+        return mix;
+    }
+
+    // threshold.<operation>.<metric>, falling back to threshold.default.<metric>; null if neither
+    public Double threshold(String operation, String metric) {
+        String value = properties.getProperty("threshold." + operation + "." + metric);
+        if (value == null) value = properties.getProperty("threshold.default." + metric);
+        return value == null ? null : Double.parseDouble(value.trim());
+    }
+}
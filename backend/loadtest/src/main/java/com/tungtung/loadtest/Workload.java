@@ -0,0 +1,154 @@
+package com.tungtung.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntConsumer;
+
+// Turns a weighted operation mix into requests against the dataset. Assigns go after a
+// small set of hot open listings so they contend on the same rows; unassigns undo
+// assigns that succeeded, keeping capacity from running out over a long run.
+public class Workload {
+
+    private static final String[] SORTS = {"--", "price", "deadline", "distance", "best-match"};
+    private static final String[] SEARCHES = {"garden", "move", "clean", "dog", "paint"};
+    private static final int PAGE_SIZE = 20;
+
+    // What to send, and what to do with the status once it's back
+    public record Call(String operation, HttpRequest request, IntConsumer onStatus) {}
+
+    private record Assignment(int listid, int uid) {}
+
+    private final String baseUrl;
+    private final Duration timeout;
+    private final Dataset dataset;
+    private final List<Dataset.Listing> hot;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+    private final ConcurrentLinkedQueue<Assignment> assigned = new ConcurrentLinkedQueue<>();
+
+    public Workload(String baseUrl, Duration timeout, Dataset dataset, Map<String, Integer> mix, int hotListings, long seed) {
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+        this.dataset = dataset;
+        this.operations = mix.keySet().toArray(new String[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) throw new IllegalArgumentException("The mix has no operations");
+
+        List<Dataset.Listing> candidates = new ArrayList<>(dataset.open.isEmpty() ? dataset.listings : dataset.open);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = candidates.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Dataset.Listing swap = candidates.get(i);
+            candidates.set(i, candidates.get(j));
+            candidates.set(j, swap);
+        }
+        this.hot = candidates.subList(0, Math.min(Math.max(1, hotListings), candidates.size()));
+    }
+
+    public String[] operations() {
+        return operations.clone();
+    }
+
+    public Call next(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (cumulativeWeights[index] <= pick) index++;
+        return call(operations[index], random);
+    }
+
+    private Call call(String operation, SplittableRandom random) {
+        return switch (operation) {
+            case "browse" -> browse(random);
+            case "hydrate" -> hydrate(random);
+            case "listing" -> get(operation, "/listings/" + listing(random).listid());
+            case "feed" -> get(operation, "/feed/" + user(random).uid());
+            case "profile" -> get(operation, "/profile/" + user(random).uid());
+            case "login" -> login(random);
+            case "assign" -> assign(random);
+            case "unassign" -> unassign(random);
+            case "review" -> review(random);
+            default -> throw new IllegalArgumentException("Unknown operation in mix: " + operation);
+        };
+    }
+
+    private Call browse(SplittableRandom random) {
+        Dataset.User user = user(random);
+        Dataset.Listing near = listing(random);
+        StringBuilder path = new StringBuilder("/listings/filterAndSort?status=open&limit=").append(PAGE_SIZE)
+            .append("&uid=").append(user.uid())
+            .append("&latitude=").append(near.latitude())
+            .append("&longitude=").append(near.longitude())
+            .append("&sort=").append(SORTS[random.nextInt(SORTS.length)]);
+        if (random.nextInt(4) == 0) path.append("&radius_km=").append(5 + random.nextInt(46));
+        if (random.nextInt(5) == 0) path.append("&search=").append(SEARCHES[random.nextInt(SEARCHES.length)]);
+        return get("browse", path.toString());
+    }
+
+    private Call hydrate(SplittableRandom random) {
+        StringJoiner ids = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < PAGE_SIZE; i++) ids.add(Integer.toString(listing(random).listid()));
+        return post("hydrate", "/listings/hydrate", ids.toString(), status -> {});
+    }
+
+    private Call login(SplittableRandom random) {
+        // Seed gives every account the password "password"
+        String body = "{\"email\":\"" + user(random).email() + "\",\"password\":\"password\"}";
+        return post("login", "/login", body, status -> {});
+    }
+
+    private Call assign(SplittableRandom random) {
+        Assignment assignment = new Assignment(hot.get(random.nextInt(hot.size())).listid(), user(random).uid());
+        return post("assign", "/listings/" + assignment.listid() + "/assign/" + assignment.uid(), "", status -> {
+            if (status == 200) assigned.add(assignment);
+        });
+    }
+
+    private Call unassign(SplittableRandom random) {
+        Assignment assignment = assigned.poll();
+        if (assignment == null) return assign(random);
+        return post("unassign", "/listings/" + assignment.listid() + "/unassign/" + assignment.uid(), "", status -> {});
+    }
+
+    private Call review(SplittableRandom random) {
+        if (dataset.completed.isEmpty()) return get("listing", "/listings/" + listing(random).listid());
+        Dataset.Completed target = dataset.completed.get(random.nextInt(dataset.completed.size()));
+        // Re-reviewing updates the existing row, so repeats stay valid
+        String body = "{\"listid\":" + target.listid() + ",\"reviewer_uid\":" + target.poster()
+            + ",\"reviewee_uid\":" + target.taker() + ",\"rating\":" + (1 + random.nextInt(5))
+            + ",\"comment\":\"load test\"}";
+        return post("review", "/reviews", body, status -> {});
+    }
+
+    private Dataset.User user(SplittableRandom random) {
+        return dataset.users.get(random.nextInt(dataset.users.size()));
+    }
+
+    private Dataset.Listing listing(SplittableRandom random) {
+        return dataset.listings.get(random.nextInt(dataset.listings.size()));
+    }
+
+    private Call get(String operation, String path) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout).GET().build();
+        return new Call(operation, request, status -> {});
+    }
+
+    private Call post(String operation, String path, String body, IntConsumer onStatus) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        return new Call(operation, request, onStatus);
+    }
+}
@@ -0,0 +1,195 @@
+package com.tungtung.hello;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Assigns and unassigns takers without SERIALIZABLE or FOR UPDATE reads. Listings keeps a
+// denormalized assigned_count, and one guarded UPDATE checks status, capacity and ownership
+// while claiming the seat, so the listing row is only locked for that statement and the
+// AssignedTo write that follows. The checks only get re-read to explain a rejection.
+@Component
+public class AssignmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssignmentService.class);
+
+    // status is assigned first so it sees the old assigned_count (MySQL applies SET left to right)
+    private static final String CLAIM_SEAT_SQL = """
+        UPDATE Listings L
+        SET L.status = IF(L.assigned_count + 1 >= L.capacity, 'taken', L.status),
+            L.assigned_count = L.assigned_count + 1,
+            L.version = L.version + 1
+        WHERE L.listid = ? AND L.status = 'open' AND L.assigned_count < L.capacity
+          AND NOT EXISTS (SELECT 1 FROM Posts P WHERE P.listid = L.listid AND P.uid = ?)
+        """;
+
+    private static final String RELEASE_SEAT_SQL = """
+        UPDATE Listings L
+        SET L.status = IF(L.status = 'taken', 'open', L.status),
+            L.assigned_count = L.assigned_count - 1,
+            L.version = L.version + 1
+        WHERE L.listid = ? AND L.status IN ('open', 'taken')
+          AND EXISTS (SELECT 1 FROM AssignedTo A WHERE A.listid = L.listid AND A.uid = ?)
+        """;
+
+    public enum Outcome {
+        ASSIGNED("Successfully assigned task."),
+        UNASSIGNED("Successfully unassigned from task."),
+        NOT_FOUND("Listing not found."),
+        NOT_OPEN("Listing is not open."),
+        OWN_LISTING("You cannot take your own task."),
+        ALREADY_ASSIGNED("You are already assigned to this task."),
+        FULL("Task already full."),
+        CLOSED("Cannot unassign from a completed or cancelled listing."),
+        NOT_ASSIGNED("You are not assigned to this task.");
+
+        private final String message;
+
+        Outcome(String message) {
+            this.message = message;
+        }
+
+        public String message() {
+            return message;
+        }
+
+        public boolean succeeded() {
+            return this == ASSIGNED || this == UNASSIGNED;
+        }
+    }
+
+    // The outcome and, when it succeeded, the listing's status, assigned_count and version
+    // as the transaction left them, so ListingIndex can apply them without re-reading it
+    public record Result(Outcome outcome, String status, int assignedCount, int version) {
+        static Result of(Outcome outcome) {
+            return new Result(outcome, null, 0, 0);
+        }
+
+        public boolean succeeded() {
+            return outcome.succeeded();
+        }
+
+        public String message() {
+            return outcome.message();
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int maxAttempts;
+    private final Metrics metrics;
+
+    public AssignmentService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                             @Value("${tungtung.assign.max-attempts:5}") int maxAttempts, Metrics metrics) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.maxAttempts = maxAttempts;
+        this.metrics = metrics;
+    }
+
+    public Result assign(int listid, int uid) {
+        return withRetry("assign", () -> tx.execute(status -> {
+            try (QueryScope scope = QueryScope.named("assign.claimSeat")) {
+                if (jdbc.update(CLAIM_SEAT_SQL, listid, uid) == 0) {
+                    return Result.of(whyNotAssignable(listid, uid));
+                }
+            }
+            try (QueryScope scope = QueryScope.named("assign.insert")) {
+                jdbc.update("INSERT INTO AssignedTo(listid, uid) VALUES (?, ?)", listid, uid);
+            } catch (DuplicateKeyException e) {
+                // Give the seat back
+                status.setRollbackOnly();
+                return Result.of(Outcome.ALREADY_ASSIGNED);
+            }
+            return seats(Outcome.ASSIGNED, "assign.readSeats", listid);
+        }));
+    }
+
+    public Result unassign(int listid, int uid) {
+        return withRetry("unassign", () -> tx.execute(status -> {
+            // Same lock order as assign (Listings, then AssignedTo) so the two can't deadlock
+            try (QueryScope scope = QueryScope.named("unassign.releaseSeat")) {
+                if (jdbc.update(RELEASE_SEAT_SQL, listid, uid) == 0) {
+                    return Result.of(whyNotUnassignable(listid, uid));
+                }
+            }
+            try (QueryScope scope = QueryScope.named("unassign.delete")) {
+                jdbc.update("DELETE FROM AssignedTo WHERE listid = ? AND uid = ?", listid, uid);
+            }
+            return seats(Outcome.UNASSIGNED, "unassign.readSeats", listid);
+        }));
+    }
+
+    // A primary key read of the row this transaction already holds locked
+    private Result seats(Outcome outcome, String query, int listid) {
+        try (QueryScope scope = QueryScope.named(query)) {
+            return jdbc.queryForObject("SELECT status, assigned_count, version FROM Listings WHERE listid = ?",
+                (rs, i) -> new Result(outcome, rs.getString("status"), rs.getInt("assigned_count"), rs.getInt("version")),
+                listid);
+        }
+    }
+
+    // The guarded UPDATE matched nothing; one plain read says which guard failed
+    private Outcome whyNotAssignable(int listid, int uid) {
+        List<Map<String, Object>> rows;
+        try (QueryScope scope = QueryScope.named("assign.whyNot")) {
+            rows = jdbc.queryForList("""
+                SELECT L.status, L.assigned_count, L.capacity,
+                       EXISTS (SELECT 1 FROM Posts P WHERE P.listid = L.listid AND P.uid = ?) AS is_poster,
+                       EXISTS (SELECT 1 FROM AssignedTo A WHERE A.listid = L.listid AND A.uid = ?) AS is_assigned
+                FROM Listings L
+                WHERE L.listid = ?
+                """, uid, uid, listid);
+        }
+        if (rows.isEmpty()) return Outcome.NOT_FOUND;
+        // Same order as the old checks so clients see the same messages
+        Map<String, Object> row = rows.get(0);
+        if (!"open".equals(row.get("status"))) return Outcome.NOT_OPEN;
+        if (((Number) row.get("is_poster")).intValue() > 0) return Outcome.OWN_LISTING;
+        if (((Number) row.get("is_assigned")).intValue() > 0) return Outcome.ALREADY_ASSIGNED;
+        return Outcome.FULL;
+    }
+
+    private Outcome whyNotUnassignable(int listid, int uid) {
+        List<String> status;
+        try (QueryScope scope = QueryScope.named("unassign.whyNot")) {
+            status = jdbc.queryForList("SELECT status FROM Listings WHERE listid = ?", String.class, listid);
+        }
+        if (status.isEmpty()) return Outcome.NOT_FOUND;
+        if ("completed".equals(status.get(0)) || "cancelled".equals(status.get(0))) return Outcome.CLOSED;
+        return Outcome.NOT_ASSIGNED;
+    }
+
+    // Deadlocks and lock wait timeouts are retried with jittered backoff
+    private Result withRetry(String operation, Supplier<Result> attempt) {
+        for (int i = 1; ; i++) {
+            try {
+                return attempt.get();
+            } catch (TransientDataAccessException e) {
+                if (i >= maxAttempts) throw e;
+                logger.debug("Assignment attempt {} failed, retrying: {}", i, e.getMessage());
+                metrics.counter("tungtung_lock_retries_total", "Transactions retried after a deadlock or lock wait timeout",
+                    "operation", operation).increment();
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L << i));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
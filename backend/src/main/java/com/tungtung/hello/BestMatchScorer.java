@@ -0,0 +1,47 @@
+package com.tungtung.hello;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// Computes the best-match score of a listing for a user from configurable weights.
+// explain() breaks a score down into its weighted components.
+@Component
+@EnableConfigurationProperties(BestMatchWeights.class)
+public class BestMatchScorer {
+
+    private static final double SECONDS_PER_DAY = 86400;
+
+    private final BestMatchWeights weights;
+
+    public BestMatchScorer(BestMatchWeights weights) {
+        this.weights = weights;
+    }
+
+    public BestMatchWeights weights() {
+        return weights;
+    }
+
+    // Listings without a deadline have no score (NULL in the old SQL)
+    public Double score(long categoryMatches, double price, int duration, Long deadlineSeconds, double distanceKm) {
+        if (deadlineSeconds == null) return null;
+        return weights.categoryMatch() * categoryMatches
+            + weights.payRate() * (price / duration)
+            + weights.deadlinePerDay() * (deadlineSeconds / SECONDS_PER_DAY)
+            + weights.distancePerKm() * distanceKm
+            + weights.bias();
+    }
+
+    public Map<String, Object> explain(long categoryMatches, double price, int duration, Long deadlineSeconds, double distanceKm) {
+        Map<String, Object> components = new LinkedHashMap<>();
+        components.put("category", weights.categoryMatch() * categoryMatches);
+        components.put("pay_rate", weights.payRate() * (price / duration));
+        components.put("deadline", deadlineSeconds == null ? null : weights.deadlinePerDay() * (deadlineSeconds / SECONDS_PER_DAY));
+        components.put("distance", weights.distancePerKm() * distanceKm);
+        components.put("bias", weights.bias());
+        components.put("total", score(categoryMatches, price, duration, deadlineSeconds, distanceKm));
+        return components;
+    }
+}
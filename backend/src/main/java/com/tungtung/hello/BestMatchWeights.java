@@ -0,0 +1,20 @@
+package com.tungtung.hello;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+// Per-deployment weights for the best-match score (tungtung.best-match.* in application.properties).
+// The defaults reproduce the constants that used to be hard-coded in the filterAndSort SQL.
+@ConfigurationProperties(prefix = "tungtung.best-match")
+public record BestMatchWeights(
+    // points per listing category the user is interested in
+    @DefaultValue("75") double categoryMatch,
+    // points per dollar-per-minute of pay
+    @DefaultValue("10") double payRate,
+    // points per day until the deadline (negative favours urgent tasks); was -1 per 6,000,000 s
+    @DefaultValue("-0.0144") double deadlinePerDay,
+    // points per km of distance; was -1 per planar degree
+    @DefaultValue("-0.008993") double distancePerKm,
+    // constant offset; was +20 + 255
+    @DefaultValue("275") double bias
+) {}
@@ -0,0 +1,23 @@
+package com.tungtung.hello;
+
+import java.util.regex.Pattern;
+
+// Telling emails from phone numbers at login, and reducing phone numbers to digits so
+// "(555) 123-4567" and "555-123-4567" compare equal
+final class ContactInfo {
+
+    // Spaces, hyphens, parentheses and the leading +
+    private static final Pattern PHONE_PUNCTUATION = Pattern.compile("[\\s\\-\\(\\)\\+]");
+
+    private ContactInfo() {
+    }
+
+    static boolean isEmail(String input) {
+        return input != null && input.contains("@") && input.contains(".");
+    }
+
+    static String normalizePhoneNumber(String phoneNumber) {
+        if (phoneNumber == null) return null;
+        return PHONE_PUNCTUATION.matcher(phoneNumber).replaceAll("");
+    }
+}
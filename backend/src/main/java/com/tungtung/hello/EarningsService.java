@@ -0,0 +1,94 @@
+package com.tungtung.hello;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Earnings ledger. Completing a listing credits its price to every assigned user in
+// EarningsLedger and bumps their running totals in UserEarnings (lifetime) and
+// MonthlyEarnings, so reading a user's earnings never scans other users' work.
+@Component
+public class EarningsService {
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    public EarningsService(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    // Flips a taken listing to completed and credits its takers in one transaction.
+    // Returns false (and credits nothing) if the listing wasn't taken anymore.
+    public boolean completeListing(int listid) {
+        return tx.execute(status -> {
+            int updated = jdbc.update(
+                "UPDATE Listings SET status = 'completed', version = version + 1 WHERE listid = ? AND status = 'taken'", listid);
+            if (updated == 0) return false;
+
+            jdbc.update("""
+                INSERT INTO EarningsLedger (listid, uid, amount, earned_at)
+                SELECT a.listid, a.uid, l.price, CURRENT_TIMESTAMP
+                FROM AssignedTo a JOIN Listings l ON l.listid = a.listid
+                WHERE a.listid = ?
+                """, listid);
+            jdbc.update("""
+                INSERT INTO UserEarnings (uid, lifetime_total)
+                SELECT e.uid, e.amount FROM EarningsLedger e WHERE e.listid = ?
+                ON DUPLICATE KEY UPDATE lifetime_total = lifetime_total + e.amount
+                """, listid);
+            jdbc.update("""
+                INSERT INTO MonthlyEarnings (uid, month, total)
+                SELECT e.uid, DATE_FORMAT(e.earned_at, '%Y-%m-01'), e.amount FROM EarningsLedger e WHERE e.listid = ?
+                ON DUPLICATE KEY UPDATE total = total + e.amount
+                """, listid);
+            return true;
+        });
+    }
+
+    // Earnings between two dates (both inclusive). Whole months come from MonthlyEarnings;
+    // only the partial months at either end are summed from the ledger.
+    public Map<String, Object> earningsBetween(int uid, LocalDate from, LocalDate to) {
+        LocalDate end = to.plusDays(1);
+        LocalDate firstFullMonth = from.getDayOfMonth() == 1 ? from : from.withDayOfMonth(1).plusMonths(1);
+        LocalDate endOfFullMonths = end.withDayOfMonth(1);
+
+        BigDecimal total;
+        List<Map<String, Object>> months = new ArrayList<>();
+        if (firstFullMonth.isBefore(endOfFullMonths)) {
+            total = ledgerTotal(uid, from, firstFullMonth).add(ledgerTotal(uid, endOfFullMonths, end));
+            for (Map<String, Object> month : jdbc.queryForList(
+                    "SELECT DATE_FORMAT(month, '%Y-%m') AS period, total FROM MonthlyEarnings WHERE uid = ? AND month >= ? AND month < ? ORDER BY month",
+                    uid, firstFullMonth, endOfFullMonths)) {
+                total = total.add((BigDecimal) month.get("total"));
+                months.add(month);
+            }
+        } else {
+            total = ledgerTotal(uid, from, end);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("uid", uid);
+        response.put("from", from.toString());
+        response.put("to", to.toString());
+        response.put("total_earnings", total);
+        response.put("months", months);
+        return response;
+    }
+
+    private BigDecimal ledgerTotal(int uid, LocalDate from, LocalDate until) {
+        if (!from.isBefore(until)) return BigDecimal.ZERO;
+        return jdbc.queryForObject(
+            "SELECT COALESCE(SUM(amount), 0) FROM EarningsLedger WHERE uid = ? AND earned_at >= ? AND earned_at < ?",
+            BigDecimal.class, uid, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(until.atStartOfDay()));
+    }
+}
@@ -0,0 +1,33 @@
+package com.tungtung.hello;
+
+import java.io.IOException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+// A Posts or AssignedTo row (/postings, /assignments): two ints instead of a column map
+@JsonSerialize(using = Edge.Serializer.class)
+public record Edge(int uid, int listid) {
+
+    // For "SELECT uid, listid FROM ..."
+    public static final RowMapper<Edge> MAPPER = (rs, rowNum) -> new Edge(rs.getInt(1), rs.getInt(2));
+
+    public static final class Serializer extends StdSerializer<Edge> {
+
+        public Serializer() {
+            super(Edge.class);
+        }
+
+        @Override
+        public void serialize(Edge edge, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("uid", edge.uid());
+            json.writeNumberField("listid", edge.listid());
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.tungtung.hello;
+
+import java.util.Map;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// Times each request by its route ("GET /profile/{uid}"), from the first dispatch to the
+// end of the last, so signup and login include their wait for the password pool. While a
+// handler runs, its JDBC statements are named after the route unless a narrower
+// QueryScope says otherwise. Each request is also a RequestEvent for Flight Recordings.
+class EndpointMetrics implements AsyncHandlerInterceptor {
+
+    private static final String START = EndpointMetrics.class.getName() + ".start";
+    private static final String SCOPE = EndpointMetrics.class.getName() + ".scope";
+    private static final String EVENT = EndpointMetrics.class.getName() + ".event";
+
+    private final Metrics metrics;
+
+    EndpointMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // An async request comes back through here for its second dispatch
+        if (request.getAttribute(START) == null) {
+            request.setAttribute(START, System.nanoTime());
+            RequestEvent event = new RequestEvent();
+            event.begin();
+            request.setAttribute(EVENT, event);
+        }
+        request.setAttribute(SCOPE, QueryScope.named(route(request)));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        closeScope(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        closeScope(request);
+        Object start = request.getAttribute(START);
+        if (start == null) return;
+        long elapsed = System.nanoTime() - (Long) start;
+        // Exceptions no resolver handled still look like 200 at this point
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        String route = route(request);
+        metrics.timer("tungtung_http_request_seconds", "Request time by route", "endpoint", route).record(elapsed);
+        metrics.counter("tungtung_http_requests_total", "Requests by route and status code",
+            "endpoint", route, "status", Integer.toString(status)).increment();
+
+        RequestEvent event = (RequestEvent) request.getAttribute(EVENT);
+        if (event != null && event.shouldCommit()) {
+            event.endpoint = route;
+            event.uid = uid(request);
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    private static void closeScope(HttpServletRequest request) {
+        Object scope = request.getAttribute(SCOPE);
+        if (scope != null) {
+            request.removeAttribute(SCOPE);
+            ((QueryScope) scope).close();
+        }
+    }
+
+    // The {uid} path variable, else a uid parameter (filterAndSort, graph), else -1
+    private static int uid(HttpServletRequest request) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String uid = variables instanceof Map<?, ?> map ? (String) map.get("uid") : null;
+        if (uid == null) uid = request.getParameter("uid");
+        try {
+            return uid != null ? Integer.parseInt(uid.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmatched");
+    }
+}
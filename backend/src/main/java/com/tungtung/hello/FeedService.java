@@ -0,0 +1,238 @@
+package com.tungtung.hello;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.tungtung.hello.ListingIndex.IndexedListing;
+
+// Materialized per-user recommendation feeds: the top open listings by best-match score
+// (without the distance term). A feed is built the first time a user reads it and is then
+// kept up to date from ListingIndex events, so reading it is a single map lookup.
+// A new or re-opened listing is only offered to users whose interests share one of its
+// categories (users without interests see every category, like the default feed).
+// Only tungtung.feed.max-feeds feeds are kept, and a feed nobody has read for
+// tungtung.feed.idle-minutes is dropped; either way its user stops receiving listings
+// until the next read builds it again.
+@Component
+public class FeedService implements ListingIndex.Listener {
+
+    private static final Comparator<Entry> BEST_FIRST = Comparator.comparingDouble(Entry::score).reversed()
+        .thenComparingInt(Entry::listid);
+
+    private final ListingIndex listingIndex;
+    private final BestMatchScorer scorer;
+    private final int size;
+    // Each feed keeps extra entries so most removals don't need a rebuild
+    private final int capacity;
+
+    // Published rows, read without locking. Evicting one drops the rest of that user's
+    // state below (asynchronously, see forget).
+    private final Cache<Integer, List<Map<String, Object>>> published;
+
+    // Everything below is guarded by this, and only covers users who have a feed
+    private final Map<Integer, Feed> feeds = new HashMap<>();
+    private final Map<Integer, Set<Integer>> usersByCategory = new HashMap<>();
+    private final Set<Integer> usersWithoutInterests = new HashSet<>();
+    private final Map<Integer, Set<Integer>> feedsByListid = new HashMap<>();
+
+    public FeedService(ListingIndex listingIndex, BestMatchScorer scorer, @Value("${tungtung.feed.size:50}") int size,
+                       @Value("${tungtung.feed.max-feeds:100000}") long maxFeeds,
+                       @Value("${tungtung.feed.idle-minutes:60}") long idleMinutes) {
+        this.listingIndex = listingIndex;
+        this.scorer = scorer;
+        this.size = size;
+        this.capacity = size * 2;
+        this.published = Caffeine.newBuilder()
+            .maximumSize(maxFeeds)
+            .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+            .removalListener((Integer uid, List<Map<String, Object>> rows, RemovalCause cause) -> {
+                if (cause.wasEvicted()) forget(uid);
+            })
+            .build();
+        listingIndex.addListener(this);
+    }
+
+    // The caller checks uid is a real user; every uid read here gets a feed
+    public List<Map<String, Object>> feed(int uid) {
+        List<Map<String, Object>> rows = published.getIfPresent(uid);
+        if (rows != null) return rows;
+        if (!listingIndex.isReady()) return List.of();
+        synchronized (this) {
+            Feed feed = feeds.get(uid);
+            // Still here if its rows were evicted but forget hasn't run yet
+            return feed != null ? publish(uid, feed) : build(uid, listingIndex.interestsOf(uid));
+        }
+    }
+
+    @Override
+    public synchronized void onRebuilt() {
+        feeds.clear();
+        published.invalidateAll();
+        feedsByListid.clear();
+        usersByCategory.clear();
+        usersWithoutInterests.clear();
+    }
+
+    @Override
+    public synchronized void onListingChanged(IndexedListing listing) {
+        Set<Integer> affected = new HashSet<>();
+
+        // Drop the old version from every feed that holds it
+        Set<Integer> holders = feedsByListid.remove(listing.listid);
+        if (holders != null) {
+            for (int uid : holders) {
+                feeds.get(uid).remove(listing.listid);
+                affected.add(uid);
+            }
+        }
+
+        if ("open".equals(listingIndex.statusOf(listing)) && listing.categoryIds.length > 0) {
+            Set<Integer> targets = new HashSet<>(usersWithoutInterests);
+            for (int categoryId : listing.categoryIds) {
+                targets.addAll(usersByCategory.getOrDefault(categoryId, Set.of()));
+            }
+            for (int uid : targets) {
+                Feed feed = feeds.get(uid);
+                if (feed == null) continue;
+                offer(uid, feed, listing);
+                affected.add(uid);
+            }
+        }
+
+        for (int uid : affected) {
+            Feed feed = feeds.get(uid);
+            if (feed.entries.size() < size && !feed.complete) {
+                build(uid, feed.interests);
+            } else {
+                publish(uid, feed);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onInterestsChanged(int uid, Set<Integer> categoryIds) {
+        Feed feed = feeds.get(uid);
+        if (feed != null) build(uid, Set.copyOf(categoryIds));
+    }
+
+    private List<Map<String, Object>> build(int uid, Set<Integer> interests) {
+        Feed old = feeds.get(uid);
+        if (old != null) discard(uid, old);
+        addInterests(uid, interests);
+
+        List<IndexedListing> candidates = listingIndex.openListings(interests);
+        Feed feed = new Feed(interests);
+        feed.complete = true;
+        feeds.put(uid, feed);
+        for (IndexedListing listing : candidates) offer(uid, feed, listing);
+        return publish(uid, feed);
+    }
+
+    // A feed's rows were evicted: drop the feed and stop routing listings to its user,
+    // unless a read has built it again since
+    private synchronized void forget(int uid) {
+        if (published.asMap().containsKey(uid)) return;
+        Feed feed = feeds.get(uid);
+        if (feed != null) discard(uid, feed);
+    }
+
+    private void offer(int uid, Feed feed, IndexedListing listing) {
+        long matches = listing.categoryMatches(feed.interests);
+        Long deadline = listing.deadline == null ? null : listing.deadline.getTime() / 1000;
+        // The deadline term is linear, so scoring against a fixed epoch keeps the same order as scoring against now
+        Double score = scorer.score(matches, listing.price.doubleValue(), listing.duration, deadline, 0);
+        Entry entry = new Entry(listing, listing.listid, matches, score == null ? Double.NEGATIVE_INFINITY : score);
+
+        if (feed.entries.size() >= capacity) {
+            Entry worst = feed.entries.last();
+            // A candidate no longer fits, so the feed can't refill itself from what it holds
+            feed.complete = false;
+            if (BEST_FIRST.compare(entry, worst) >= 0) return;
+            feed.remove(worst.listid());
+            unlink(worst.listid(), uid);
+        }
+        feed.add(entry);
+        feedsByListid.computeIfAbsent(listing.listid, k -> new HashSet<>()).add(uid);
+    }
+
+    private List<Map<String, Object>> publish(int uid, Feed feed) {
+        List<Entry> top = new ArrayList<>(Math.min(size, feed.entries.size()));
+        Iterator<Entry> it = feed.entries.iterator();
+        while (top.size() < size && it.hasNext()) top.add(it.next());
+        // Status and assigned_count change in place under the index lock, so read them there
+        List<Map<String, Object>> rows = listingIndex.baseRows(top.stream().map(Entry::listing).toList());
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).put("category_matches", top.get(i).categoryMatches());
+        }
+        List<Map<String, Object>> copy = List.copyOf(rows);
+        published.put(uid, copy);
+        return copy;
+    }
+
+    private void discard(int uid, Feed feed) {
+        for (Entry entry : feed.entries) unlink(entry.listid(), uid);
+        feeds.remove(uid);
+        published.invalidate(uid);
+        removeInterests(uid);
+    }
+
+    private void unlink(int listid, int uid) {
+        Set<Integer> holders = feedsByListid.get(listid);
+        if (holders == null) return;
+        holders.remove(uid);
+        if (holders.isEmpty()) feedsByListid.remove(listid);
+    }
+
+    private void addInterests(int uid, Set<Integer> categoryIds) {
+        if (categoryIds.isEmpty()) {
+            usersWithoutInterests.add(uid);
+            return;
+        }
+        for (int categoryId : categoryIds) {
+            usersByCategory.computeIfAbsent(categoryId, k -> new HashSet<>()).add(uid);
+        }
+    }
+
+    private void removeInterests(int uid) {
+        usersWithoutInterests.remove(uid);
+        usersByCategory.values().forEach(users -> users.remove(uid));
+    }
+
+    private record Entry(IndexedListing listing, int listid, long categoryMatches, double score) {}
+
+    private static final class Feed {
+        final Set<Integer> interests;
+        final TreeSet<Entry> entries = new TreeSet<>(BEST_FIRST);
+        final Map<Integer, Entry> byListid = new HashMap<>();
+        // True while entries holds every candidate, so a short feed is simply all there is
+        boolean complete;
+
+        Feed(Set<Integer> interests) {
+            this.interests = interests;
+        }
+
+        void add(Entry entry) {
+            entries.add(entry);
+            byListid.put(entry.listid(), entry);
+        }
+
+        void remove(int listid) {
+            Entry entry = byListid.remove(listid);
+            if (entry != null) entries.remove(entry);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.tungtung.hello;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+// Fixed-size lat/lon cell index over listing slots. A radius query only visits
+// the cells overlapping the circle's bounding box, so the work depends on how
+// many listings are nearby rather than on the size of the table.
+class GeoGrid {
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+    static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final double cellDegrees;
+    private final int lonCells;
+    private final Map<Long, Cell> cells = new HashMap<>();
+
+    GeoGrid(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.lonCells = (int) Math.ceil(360 / cellDegrees);
+    }
+
+    void add(int slot, double lat, double lon) {
+        cells.computeIfAbsent(key(latCell(lat), lonCell(lon)), k -> new Cell()).add(slot);
+    }
+
+    void remove(int slot, double lat, double lon) {
+        long key = key(latCell(lat), lonCell(lon));
+        Cell cell = cells.get(key);
+        if (cell == null) return;
+        cell.remove(slot);
+        if (cell.size == 0) cells.remove(key);
+    }
+
+    // Visits every slot in a cell that overlaps the circle; callers still check the exact distance
+    void forEachCandidate(double lat, double lon, double radiusKm, IntConsumer action) {
+        double dLat = radiusKm / KM_PER_DEGREE;
+        int minLat = latCell(Math.max(-90, lat - dLat));
+        int maxLat = latCell(Math.min(90, lat + dLat));
+
+        double cosLat = Math.cos(Math.toRadians(Math.min(90, Math.abs(lat) + dLat)));
+        double dLon = cosLat <= 0 ? 180 : radiusKm / (KM_PER_DEGREE * cosLat);
+
+        int firstLon;
+        int lonSpan;
+        if (dLon >= 180 || lat + dLat >= 90 || lat - dLat <= -90) {
+            // Near a pole (or a huge radius) every longitude is in range
+            firstLon = 0;
+            lonSpan = lonCells;
+        } else {
+            firstLon = (int) Math.floor((lon - dLon + 180) / cellDegrees);
+            int lastLon = (int) Math.floor((lon + dLon + 180) / cellDegrees);
+            lonSpan = Math.min(lonCells, lastLon - firstLon + 1);
+        }
+
+        for (int y = minLat; y <= maxLat; y++) {
+            for (int i = 0; i < lonSpan; i++) {
+                // Wrap around the antimeridian
+                int x = Math.floorMod(firstLon + i, lonCells);
+                Cell cell = cells.get(key(y, x));
+                if (cell == null) continue;
+                for (int j = 0; j < cell.size; j++) action.accept(cell.slots[j]);
+            }
+        }
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private int latCell(double lat) {
+        return (int) Math.floor((lat + 90) / cellDegrees);
+    }
+
+    private int lonCell(double lon) {
+        return Math.floorMod((int) Math.floor((lon + 180) / cellDegrees), lonCells);
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    private static final class Cell {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
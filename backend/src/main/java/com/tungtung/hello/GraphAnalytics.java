@@ -0,0 +1,478 @@
+package com.tungtung.hello;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+import com.tungtung.hello.UserListingGraph.IntList;
+
+// Batch analytics over the user-listing network: PageRank-style trust scores, connected
+// components and collaboration clusters, computed on a fork-join pool and published to
+// UserTrust. Trust flows along reviews (weighted by stars) and, more weakly, both ways
+// between a poster and the users who took their listings.
+@Component
+public class GraphAnalytics {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphAnalytics.class);
+
+    private static final double DAMPING = 0.85;
+    private static final double TOLERANCE = 1e-7;
+    private static final int MAX_ITERATIONS = 100;
+    private static final int MAX_LABEL_ROUNDS = 20;
+    // A hire says less about a user than a review does
+    private static final double COLLABORATION_WEIGHT = 0.25;
+    // Nodes per fork-join leaf task
+    private static final int GRAIN = 2048;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastRun;
+
+    public GraphAnalytics(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                          @Value("${tungtung.analytics.parallelism:0}") int parallelism) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public Map<String, Object> lastRun() {
+        return lastRun;
+    }
+
+    // Load, compute and publish. Returns null if a run is already in progress.
+    public Map<String, Object> run() {
+        if (!running.compareAndSet(false, true)) return null;
+        try {
+            long start = System.nanoTime();
+            Snapshot snapshot = load(jdbc);
+            long loaded = System.nanoTime();
+            Result result = compute(snapshot, pool);
+            long computed = System.nanoTime();
+            publish(snapshot, result);
+            long published = System.nanoTime();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("users", snapshot.uids.length);
+            summary.put("listings", snapshot.listings);
+            summary.put("edges", snapshot.postUser.size + snapshot.assignUser.size + snapshot.reviewFrom.size);
+            summary.put("components", result.components);
+            summary.put("clusters", result.clusters);
+            summary.put("pagerank_iterations", result.iterations);
+            summary.put("label_rounds", result.labelRounds);
+            summary.put("parallelism", pool.getParallelism());
+            summary.put("load_ms", (loaded - start) / 1_000_000);
+            summary.put("compute_ms", (computed - loaded) / 1_000_000);
+            summary.put("publish_ms", (published - computed) / 1_000_000);
+            lastRun = summary;
+            logger.info("Graph analytics finished: {}", summary);
+            return summary;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Users get dense indexes in uid order; edges are parallel index arrays
+    static final class Snapshot {
+        int[] uids;
+        int listings;
+        final IntList postUser = new IntList();
+        final IntList postListing = new IntList();
+        final IntList assignUser = new IntList();
+        final IntList assignListing = new IntList();
+        final IntList reviewFrom = new IntList();
+        final IntList reviewTo = new IntList();
+        final IntList reviewRating = new IntList();
+    }
+
+    static Snapshot load(JdbcTemplate jdbc) {
+        Snapshot snapshot = new Snapshot();
+        Map<Integer, Integer> users = new HashMap<>();
+        IntList uids = new IntList();
+        jdbc.query("SELECT uid FROM Users ORDER BY uid", rs -> {
+            users.put(rs.getInt(1), uids.size);
+            uids.add(rs.getInt(1));
+        });
+        snapshot.uids = uids.toArray();
+
+        Map<Integer, Integer> listings = new HashMap<>();
+        jdbc.query("SELECT listid FROM Listings", rs -> {
+            listings.put(rs.getInt(1), listings.size());
+        });
+        snapshot.listings = listings.size();
+
+        jdbc.query("SELECT uid, listid FROM Posts", rs -> {
+            Integer u = users.get(rs.getInt(1));
+            Integer l = listings.get(rs.getInt(2));
+            if (u == null || l == null) return;
+            snapshot.postUser.add(u);
+            snapshot.postListing.add(l);
+        });
+        jdbc.query("SELECT uid, listid FROM AssignedTo", rs -> {
+            Integer u = users.get(rs.getInt(1));
+            Integer l = listings.get(rs.getInt(2));
+            if (u == null || l == null) return;
+            snapshot.assignUser.add(u);
+            snapshot.assignListing.add(l);
+        });
+        jdbc.query("SELECT reviewer_uid, reviewee_uid, rating FROM Reviews", rs -> {
+            Integer from = users.get(rs.getInt(1));
+            Integer to = users.get(rs.getInt(2));
+            if (from == null || to == null) return;
+            snapshot.reviewFrom.add(from);
+            snapshot.reviewTo.add(to);
+            snapshot.reviewRating.add(rs.getInt(3));
+        });
+        return snapshot;
+    }
+
+    static final class Result {
+        // Scaled so the average user scores 1.0
+        double[] trust;
+        int[] component;
+        int[] cluster;
+        int components;
+        int clusters;
+        int iterations;
+        int labelRounds;
+    }
+
+    static Result compute(Snapshot snapshot, ForkJoinPool pool) {
+        int n = snapshot.uids.length;
+        Result result = new Result();
+        if (n == 0) {
+            result.trust = new double[0];
+            result.component = new int[0];
+            result.cluster = new int[0];
+            return result;
+        }
+
+        // Directed, weighted user -> user trust edges
+        IntList from = new IntList();
+        IntList to = new IntList();
+        DoubleList weight = new DoubleList();
+        for (int i = 0; i < snapshot.reviewFrom.size; i++) {
+            from.add(snapshot.reviewFrom.items[i]);
+            to.add(snapshot.reviewTo.items[i]);
+            weight.add(snapshot.reviewRating.items[i] / 5.0);
+        }
+        int[] posterOf = new int[snapshot.listings];
+        Arrays.fill(posterOf, -1);
+        for (int i = 0; i < snapshot.postUser.size; i++) posterOf[snapshot.postListing.items[i]] = snapshot.postUser.items[i];
+        for (int i = 0; i < snapshot.assignUser.size; i++) {
+            int poster = posterOf[snapshot.assignListing.items[i]];
+            int taker = snapshot.assignUser.items[i];
+            if (poster < 0 || poster == taker) continue;
+            from.add(poster);
+            to.add(taker);
+            weight.add(COLLABORATION_WEIGHT);
+            from.add(taker);
+            to.add(poster);
+            weight.add(COLLABORATION_WEIGHT);
+        }
+
+        pageRank(n, from, to, weight, pool, result);
+        components(snapshot, pool, result);
+        clusters(n, from, to, weight, snapshot.uids, pool, result);
+        return result;
+    }
+
+    // Pull-style weighted PageRank over incoming-edge CSR; each node's new score only
+    // reads the previous iteration, so the node range splits freely across the pool
+    private static void pageRank(int n, IntList from, IntList to, DoubleList weight, ForkJoinPool pool, Result result) {
+        double[] outWeight = new double[n];
+        for (int e = 0; e < from.size; e++) outWeight[from.items[e]] += weight.items[e];
+
+        int[] inOffsets = new int[n + 1];
+        for (int e = 0; e < to.size; e++) inOffsets[to.items[e] + 1]++;
+        for (int v = 0; v < n; v++) inOffsets[v + 1] += inOffsets[v];
+        int[] inSource = new int[to.size];
+        double[] inShare = new double[to.size];
+        int[] fill = Arrays.copyOf(inOffsets, n);
+        for (int e = 0; e < to.size; e++) {
+            int slot = fill[to.items[e]]++;
+            inSource[slot] = from.items[e];
+            inShare[slot] = weight.items[e] / outWeight[from.items[e]];
+        }
+
+        double[] rank = new double[n];
+        double[] next = new double[n];
+        Arrays.fill(rank, 1.0 / n);
+        int iteration = 0;
+        while (iteration < MAX_ITERATIONS) {
+            iteration++;
+            double[] current = rank;
+            double[] updated = next;
+            // Users with no outgoing trust spread theirs evenly
+            double dangling = sum(pool, n, (lo, hi) -> {
+                double mass = 0;
+                for (int v = lo; v < hi; v++) if (outWeight[v] == 0) mass += current[v];
+                return mass;
+            });
+            double base = (1 - DAMPING) / n + DAMPING * dangling / n;
+            double delta = sum(pool, n, (lo, hi) -> {
+                double change = 0;
+                for (int v = lo; v < hi; v++) {
+                    double incoming = 0;
+                    for (int e = inOffsets[v]; e < inOffsets[v + 1]; e++) incoming += current[inSource[e]] * inShare[e];
+                    updated[v] = base + DAMPING * incoming;
+                    change += Math.abs(updated[v] - current[v]);
+                }
+                return change;
+            });
+            rank = updated;
+            next = current;
+            if (delta < TOLERANCE) break;
+        }
+
+        for (int v = 0; v < n; v++) rank[v] *= n;
+        result.trust = rank;
+        result.iterations = iteration;
+    }
+
+    // Lock-free union-find over users and listings (listing i is node n + i). Roots are
+    // always linked under the smaller index, so each component's root is its lowest user.
+    private static void components(Snapshot snapshot, ForkJoinPool pool, Result result) {
+        int n = snapshot.uids.length;
+        AtomicIntegerArray parent = new AtomicIntegerArray(n + snapshot.listings);
+        for (int i = 0; i < parent.length(); i++) parent.set(i, i);
+
+        sum(pool, snapshot.postUser.size, (lo, hi) -> {
+            for (int e = lo; e < hi; e++) union(parent, snapshot.postUser.items[e], n + snapshot.postListing.items[e]);
+            return 0;
+        });
+        sum(pool, snapshot.assignUser.size, (lo, hi) -> {
+            for (int e = lo; e < hi; e++) union(parent, snapshot.assignUser.items[e], n + snapshot.assignListing.items[e]);
+            return 0;
+        });
+        sum(pool, snapshot.reviewFrom.size, (lo, hi) -> {
+            for (int e = lo; e < hi; e++) union(parent, snapshot.reviewFrom.items[e], snapshot.reviewTo.items[e]);
+            return 0;
+        });
+
+        int[] component = new int[n];
+        int components = 0;
+        for (int v = 0; v < n; v++) {
+            int root = find(parent, v);
+            component[v] = snapshot.uids[root];
+            if (root == v) components++;
+        }
+        result.component = component;
+        result.components = components;
+    }
+
+    private static int find(AtomicIntegerArray parent, int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) return x;
+            int grandparent = parent.get(p);
+            // Path halving; losing this race only skips a shortcut
+            parent.compareAndSet(x, p, grandparent);
+            x = grandparent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray parent, int a, int b) {
+        while (true) {
+            a = find(parent, a);
+            b = find(parent, b);
+            if (a == b) return;
+            if (a < b) {
+                int swap = a;
+                a = b;
+                b = swap;
+            }
+            if (parent.compareAndSet(a, a, b)) return;
+        }
+    }
+
+    // Synchronous label propagation on the undirected trust graph: every user takes the
+    // label with the most edge weight among its neighbours and itself (a self-vote as heavy
+    // as its strongest edge, which stops pairs swapping labels forever), smallest label on
+    // a tie, until nothing changes. Reading only the previous round keeps it deterministic
+    // whatever the parallelism.
+    private static void clusters(int n, IntList from, IntList to, DoubleList weight, int[] uids,
+                                 ForkJoinPool pool, Result result) {
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < from.size; e++) {
+            offsets[from.items[e] + 1]++;
+            offsets[to.items[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+        int[] neighbors = new int[from.size * 2];
+        double[] weights = new double[from.size * 2];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < from.size; e++) {
+            int a = from.items[e];
+            int b = to.items[e];
+            neighbors[fill[a]] = b;
+            weights[fill[a]++] = weight.items[e];
+            neighbors[fill[b]] = a;
+            weights[fill[b]++] = weight.items[e];
+        }
+
+        int[] labels = new int[n];
+        for (int v = 0; v < n; v++) labels[v] = v;
+        int[] nextLabels = new int[n];
+        // Per-worker tally of weight by label, cleared through the touched list
+        ThreadLocal<double[]> tallies = ThreadLocal.withInitial(() -> new double[n]);
+        ThreadLocal<int[]> touchedLists = ThreadLocal.withInitial(() -> new int[n]);
+
+        int round = 0;
+        while (round < MAX_LABEL_ROUNDS) {
+            round++;
+            int[] current = labels;
+            int[] updated = nextLabels;
+            double changed = sum(pool, n, (lo, hi) -> {
+                double[] tally = tallies.get();
+                int[] touched = touchedLists.get();
+                int changes = 0;
+                for (int v = lo; v < hi; v++) {
+                    if (offsets[v] == offsets[v + 1]) {
+                        updated[v] = current[v];
+                        continue;
+                    }
+                    int count = 0;
+                    double strongest = 0;
+                    for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                        int label = current[neighbors[e]];
+                        if (tally[label] == 0) touched[count++] = label;
+                        tally[label] += weights[e];
+                        strongest = Math.max(strongest, weights[e]);
+                    }
+                    if (tally[current[v]] == 0) touched[count++] = current[v];
+                    tally[current[v]] += strongest;
+                    int best = -1;
+                    double bestWeight = 0;
+                    for (int i = 0; i < count; i++) {
+                        int label = touched[i];
+                        if (best < 0 || tally[label] > bestWeight || (tally[label] == bestWeight && label < best)) {
+                            best = label;
+                            bestWeight = tally[label];
+                        }
+                    }
+                    for (int i = 0; i < count; i++) tally[touched[i]] = 0;
+                    updated[v] = best;
+                    if (best != current[v]) changes++;
+                }
+                return changes;
+            });
+            labels = updated;
+            nextLabels = current;
+            if (changed == 0) break;
+        }
+
+        int[] cluster = new int[n];
+        boolean[] seen = new boolean[n];
+        int clusters = 0;
+        for (int v = 0; v < n; v++) {
+            cluster[v] = uids[labels[v]];
+            if (!seen[labels[v]]) {
+                seen[labels[v]] = true;
+                clusters++;
+            }
+        }
+        result.cluster = cluster;
+        result.clusters = clusters;
+        result.labelRounds = round;
+    }
+
+    // Replaces UserTrust in one transaction, so readers see the old run until it commits
+    private void publish(Snapshot snapshot, Result result) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbc.update("DELETE FROM UserTrust");
+            jdbc.batchUpdate("""
+                INSERT INTO UserTrust (uid, trust_score, component_id, cluster_id)
+                VALUES (?, ?, ?, ?)
+                """, new IndexRange(snapshot.uids.length), 1000, (ps, v) -> {
+                ps.setInt(1, snapshot.uids[v]);
+                ps.setDouble(2, result.trust[v]);
+                ps.setInt(3, result.component[v]);
+                ps.setInt(4, result.cluster[v]);
+            });
+        });
+    }
+
+    interface RangeSum {
+        double apply(int from, int to);
+    }
+
+    // Splits [0, n) into GRAIN-sized leaves on the pool and adds up what each returns
+    static double sum(ForkJoinPool pool, int n, RangeSum body) {
+        if (n == 0) return 0;
+        return pool.invoke(new SumTask(body, 0, n));
+    }
+
+    private static final class SumTask extends RecursiveTask<Double> {
+        private final RangeSum body;
+        private final int from;
+        private final int to;
+
+        SumTask(RangeSum body, int from, int to) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= GRAIN) return body.apply(from, to);
+            int middle = (from + to) >>> 1;
+            SumTask left = new SumTask(body, from, middle);
+            left.fork();
+            double right = new SumTask(body, middle, to).compute();
+            return right + left.join();
+        }
+    }
+
+    private static final class DoubleList {
+        double[] items = new double[16];
+        int size;
+
+        void add(double value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+    }
+
+    // 0..n-1 as a collection, for batchUpdate
+    private static final class IndexRange extends AbstractList<Integer> {
+        private final int size;
+
+        IndexRange(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
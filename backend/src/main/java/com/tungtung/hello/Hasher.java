@@ -1,19 +1,36 @@
 package com.tungtung.hello;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+// The original unsalted SHA-256 password hash. New passwords go through PasswordHasher;
+// this stays for Seed and for checking accounts that haven't logged in since.
 public class Hasher {
+  // Two hex digits per byte value, so encoding is one lookup per byte
+  private static final char[] HEX_PAIRS = new char[512];
+
+  static {
+    char[] digits = "0123456789abcdef".toCharArray();
+    for (int b = 0; b < 256; b++) {
+      HEX_PAIRS[2 * b] = digits[b >>> 4];
+      HEX_PAIRS[2 * b + 1] = digits[b & 0xF];
+    }
+  }
+
   public static String hashPassword(String password) throws NoSuchAlgorithmException {
     MessageDigest md = MessageDigest.getInstance("SHA-256");
-    byte[] hashBytes = md.digest(password.getBytes());
+    byte[] hashBytes = md.digest(password.getBytes(StandardCharsets.UTF_8));
+    return toHex(hashBytes);
+  }
 
-    // Convert bytes to hex
-    StringBuilder hexString = new StringBuilder();
-    for (byte b : hashBytes) {
-        String hex = String.format("%02x", b);
-        hexString.append(hex);
+  // Lowercase hex; the only allocations are the result's char array and String
+  static String toHex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int pair = (bytes[i] & 0xFF) << 1;
+      hex[2 * i] = HEX_PAIRS[pair];
+      hex[2 * i + 1] = HEX_PAIRS[pair + 1];
     }
-
-    return hexString.toString();
+    return new String(hex);
   }
 }
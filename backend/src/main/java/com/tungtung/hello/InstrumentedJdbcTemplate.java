@@ -0,0 +1,270 @@
+package com.tungtung.hello;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.support.KeyHolder;
+
+// The application's JdbcTemplate (see MetricsConfig). Times every statement under the
+// current QueryScope name and counts the rows it read or wrote, failures, and lock wait
+// timeouts/deadlocks. Every JdbcTemplate path calls applyStatementSettings once the
+// statement is created and handleWarnings once it's done with it, so those two hooks
+// bracket the timing, which includes reading and mapping the rows. Statements over the
+// slow query threshold go to SlowQueryLog with their SQL, which the public entry points
+// below note down for applyStatementSettings, and their arguments, captured by
+// newArgPreparedStatementSetter. Each statement is also a StatementEvent for Flight
+// Recordings.
+public class InstrumentedJdbcTemplate extends JdbcTemplate {
+
+    // MySQL's ER_LOCK_WAIT_TIMEOUT and ER_LOCK_DEADLOCK
+    private static final int LOCK_WAIT_TIMEOUT = 1205;
+    private static final int DEADLOCK = 1213;
+
+    private record QueryMetrics(Metrics.Timer timer, LongAdder rows, LongAdder errors, LongAdder lockFailures) {}
+
+    // The SQL and arguments of the statement about to be created
+    private record Pending(String sql, Object[] args) {}
+
+    // Keeps its arguments where the slow query log can see them
+    private static final class CapturingSetter extends ArgumentPreparedStatementSetter {
+        final Object[] args;
+
+        CapturingSetter(Object[] args) {
+            super(args);
+            this.args = args;
+        }
+    }
+
+    private static final class Running {
+        final Statement statement;
+        final String query;
+        final String sql;
+        final Object[] args;
+        final long start;
+        final StatementEvent event = new StatementEvent();
+        long rows = -1;
+
+        Running(Statement statement, String query, Pending pending, long start) {
+            this.statement = statement;
+            this.query = query;
+            this.sql = pending != null ? pending.sql() : null;
+            this.args = pending != null ? pending.args() : null;
+            this.start = start;
+            event.begin();
+        }
+
+        void addRows(long count) {
+            rows = Math.max(rows, 0) + count;
+        }
+    }
+
+    private final Metrics metrics;
+    private final SlowQueryLog slowQueries;
+    private final Map<String, QueryMetrics> queries = new ConcurrentHashMap<>();
+    private final ThreadLocal<Pending> pending = new ThreadLocal<>();
+    // Statements this thread has open, innermost last (a row callback can run another query)
+    private final ThreadLocal<ArrayDeque<Running>> running = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public InstrumentedJdbcTemplate(DataSource dataSource, Metrics metrics, SlowQueryLog slowQueries) {
+        super(dataSource);
+        this.metrics = metrics;
+        this.slowQueries = slowQueries;
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        super.applyStatementSettings(stmt);
+        ArrayDeque<Running> open = running.get();
+        // A callback that threw something other than SQLException skips handleWarnings;
+        // its statement has been closed since, so drop it
+        if (!open.isEmpty()) open.removeIf(r -> isClosed(r.statement));
+        Pending next = pending.get();
+        pending.remove();
+        open.addLast(new Running(stmt, QueryScope.current(), next, System.nanoTime()));
+    }
+
+    @Override
+    protected void handleWarnings(Statement stmt) throws SQLException {
+        finish(stmt, null);
+        super.handleWarnings(stmt);
+    }
+
+    @Override
+    protected void handleWarnings(Statement stmt, SQLException ex) {
+        finish(stmt, ex);
+        super.handleWarnings(stmt, ex);
+    }
+
+    @Override
+    protected PreparedStatementSetter newArgPreparedStatementSetter(Object[] args) {
+        return new CapturingSetter(args);
+    }
+
+    // Every query with arguments, and any other PreparedStatementCreator query, ends up
+    // here; so do their row counts
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse) {
+        return withPending(psc, pss, () -> super.query(psc, pss, counting(rse)));
+    }
+
+    // Queries without arguments
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) {
+        return withPending(sql, null, () -> super.query(sql, counting(rse)));
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) {
+        return withPending(psc, pss, () -> super.update(psc, pss));
+    }
+
+    @Override
+    public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) {
+        return withPending(psc, null, () -> super.update(psc, generatedKeyHolder));
+    }
+
+    @Override
+    public int update(String sql) {
+        return withPending(sql, null, () -> super.update(sql));
+    }
+
+    // Batches
+    @Override
+    public <T> T execute(String sql, PreparedStatementCallback<T> action) {
+        return withPending(sql, null, () -> super.execute(sql, action));
+    }
+
+    @Override
+    public void query(String sql, RowCallbackHandler rch) {
+        super.query(sql, counting(rch));
+    }
+
+    @Override
+    public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+        super.query(psc, counting(rch));
+    }
+
+    @Override
+    public void query(String sql, PreparedStatementSetter pss, RowCallbackHandler rch) {
+        super.query(sql, pss, counting(rch));
+    }
+
+    // RowMapper queries come back as lists; other extractors' rows aren't counted
+    private <T> ResultSetExtractor<T> counting(ResultSetExtractor<T> rse) {
+        return rs -> {
+            Running current = running.get().peekLast();
+            T result = rse.extractData(rs);
+            if (current != null && result instanceof Collection<?> rows) current.addRows(rows.size());
+            return result;
+        };
+    }
+
+    private RowCallbackHandler counting(RowCallbackHandler rch) {
+        return new RowCallbackHandler() {
+            private Running current;
+
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                if (current == null) current = running.get().peekLast();
+                if (current != null) current.addRows(1);
+                rch.processRow(rs);
+            }
+        };
+    }
+
+    private <T> T withPending(PreparedStatementCreator psc, PreparedStatementSetter pss, Supplier<T> call) {
+        String sql = psc instanceof SqlProvider provider ? provider.getSql() : null;
+        return withPending(sql, pss instanceof CapturingSetter setter ? setter.args : null, call);
+    }
+
+    private <T> T withPending(String sql, Object[] args, Supplier<T> call) {
+        pending.set(new Pending(sql, args));
+        try {
+            return call.get();
+        } finally {
+            // Normally taken by applyStatementSettings already
+            pending.remove();
+        }
+    }
+
+    private void finish(Statement stmt, SQLException failure) {
+        long end = System.nanoTime();
+        Running done = null;
+        for (Iterator<Running> it = running.get().descendingIterator(); it.hasNext(); ) {
+            Running r = it.next();
+            if (r.statement == stmt) {
+                done = r;
+                it.remove();
+                break;
+            }
+        }
+        // Already recorded: handleWarnings(stmt, ex) calls handleWarnings(stmt)
+        if (done == null) return;
+
+        long elapsed = end - done.start;
+        QueryMetrics query = queries.computeIfAbsent(done.query, this::register);
+        query.timer().record(elapsed);
+        if (slowQueries.isSlow(done.query, elapsed)) {
+            slowQueries.record(done.query, done.sql, done.args, elapsed, failure != null);
+        }
+        if (failure != null) {
+            query.errors().increment();
+            if (failure.getErrorCode() == LOCK_WAIT_TIMEOUT || failure.getErrorCode() == DEADLOCK) {
+                query.lockFailures().increment();
+            }
+        }
+        long rows = failure != null ? 0 : done.rows >= 0 ? done.rows : updateCount(stmt);
+        if (rows > 0) query.rows().add(rows);
+
+        StatementEvent event = done.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.query = done.query;
+            event.rows = Math.max(rows, 0);
+            event.failed = failure != null;
+            event.commit();
+        }
+    }
+
+    private QueryMetrics register(String name) {
+        return new QueryMetrics(
+            metrics.timer("tungtung_jdbc_statement_seconds", "JDBC statement time, including reading the rows", "query", name),
+            metrics.counter("tungtung_jdbc_rows_total", "Rows read or written by JDBC statements", "query", name),
+            metrics.counter("tungtung_jdbc_errors_total", "JDBC statements that failed", "query", name),
+            metrics.counter("tungtung_jdbc_lock_failures_total", "JDBC statements that hit a lock wait timeout or deadlock", "query", name));
+    }
+
+    private static long updateCount(Statement stmt) {
+        try {
+            return stmt.getUpdateCount();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isClosed(Statement stmt) {
+        try {
+            return stmt.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.tungtung.hello;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The SQL behind /listings/filterAndSort when the listing index isn't ready: a query over
+// Listings, BelongsTo and InterestedIn assembled from whichever filters were given, with
+// its bind parameters in placeholder order. name is what the metrics call it,
+// "filterAndSort." plus the sort ("filterAndSort.bestMatch").
+record ListingFilterQuery(String name, String sql, Object[] params) {
+
+    static ListingFilterQuery build(List<String> categories, String status, String search, String sort, int uid,
+                                    double latitude, double longitude, Double radiusKm, Integer limit,
+                                    BestMatchWeights weights) {
+        // Haversine distance in km; best match weights come from BestMatchWeights, same as the index
+        StringBuilder sql = new StringBuilder("""
+            SELECT 
+                L.*, 
+                COUNT(DISTINCT II.category_id) AS category_matches,
+                ST_Distance_Sphere(POINT(L.longitude, L.latitude), POINT(?, ?)) / 1000 AS distance,
+                UNIX_TIMESTAMP(L.deadline) - UNIX_TIMESTAMP(NOW()) AS deadline_seconds,
+                -- Weighted best match score (weights are bound below)
+                (
+                    COUNT(DISTINCT II.category_id) * ?
+                    + (L.price/L.duration) * ?
+                    + (UNIX_TIMESTAMP(L.deadline) - UNIX_TIMESTAMP(NOW())) / 86400 * ?
+                    + ST_Distance_Sphere(POINT(L.longitude, L.latitude), POINT(?, ?)) / 1000 * ?
+                    + ?
+                ) AS match_score,
+                CASE L.status 
+                    WHEN 'open' THEN 1 
+                    WHEN 'taken' THEN 2 
+                    WHEN 'completed' THEN 3 
+                    WHEN 'cancelled' THEN 4 
+                    ELSE 5 
+                END AS status_rank
+            FROM Listings L
+            JOIN BelongsTo B ON L.listid = B.listid
+            JOIN TaskCategories T ON B.category_id = T.category_id
+            LEFT JOIN InterestedIn II 
+                ON B.category_id = II.category_id AND II.uid = ?
+            WHERE 1=1
+        """);
+
+        List<Object> params = new ArrayList<>();
+        params.add(longitude);
+        params.add(latitude);
+        params.add(weights.categoryMatch());
+        params.add(weights.payRate());
+        params.add(weights.deadlinePerDay());
+        params.add(longitude);
+        params.add(latitude);
+        params.add(weights.distancePerKm());
+        params.add(weights.bias());
+        params.add(uid);
+
+        // Bounding box first so idx_listings_lat_lon can narrow the scan
+        if (radiusKm != null) {
+            double dLat = radiusKm / GeoGrid.KM_PER_DEGREE;
+            sql.append(" AND L.latitude BETWEEN ? AND ?");
+            params.add(latitude - dLat);
+            params.add(latitude + dLat);
+            double cosLat = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + dLat)));
+            if (cosLat > 0 && radiusKm / (GeoGrid.KM_PER_DEGREE * cosLat) < 180) {
+                double dLon = radiusKm / (GeoGrid.KM_PER_DEGREE * cosLat);
+                // Wraps across the antimeridian when the box does
+                sql.append(" AND (L.longitude BETWEEN ? AND ? OR L.longitude BETWEEN ? AND ?)");
+                params.add(longitude - dLon);
+                params.add(longitude + dLon);
+                params.add(longitude - dLon + (longitude < 0 ? 360 : -360));
+                params.add(longitude + dLon + (longitude < 0 ? 360 : -360));
+            }
+        }
+
+        if (categories != null && !categories.isEmpty()) {
+            sql.append(" AND T.category_name IN (")
+            .append("?,".repeat(categories.size() - 1))
+            .append("?)");
+            params.addAll(categories);
+        }
+
+        if (!"all".equals(status)) {
+            sql.append(" AND L.status = ?");
+            params.add(status);
+        }
+
+        if (!search.isEmpty()) {
+            // Prefix match every token against ft_listings_text, like the in-memory search index
+            List<String> tokens = SearchIndex.tokenize(search);
+            if (!tokens.isEmpty()) {
+                sql.append(" AND MATCH(L.listing_name, L.description, L.address) AGAINST (? IN BOOLEAN MODE)");
+                params.add(String.join(" ", tokens.stream().map(t -> "+" + t + "*").toList()));
+            } else {
+                sql.append(" AND (LOWER(L.listing_name) LIKE ? OR LOWER(L.description) LIKE ? OR LOWER(L.address) LIKE ?)");
+                String q = "%" + search.toLowerCase() + "%";
+                params.add(q);
+                params.add(q);
+                params.add(q);
+            }
+        }
+
+        sql.append(" GROUP BY L.listid");
+
+        if (categories != null && !categories.isEmpty()) {
+            sql.append(" HAVING COUNT(DISTINCT T.category_name) = ?");
+            params.add(categories.size());
+        }
+
+        if (radiusKm != null) {
+            sql.append(categories != null && !categories.isEmpty() ? " AND" : " HAVING").append(" distance <= ?");
+            params.add(radiusKm);
+        }
+
+        //add sorting
+        String sortName = sort.toLowerCase();
+        switch (sortName) {
+            case "distance" -> sql.append(" ORDER BY status_rank ASC, distance ASC");
+            case "price" -> sql.append(" ORDER BY status_rank ASC, L.price DESC");
+            case "deadline" -> sql.append(" ORDER BY status_rank ASC, L.deadline ASC");
+            case "category" -> sql.append(" ORDER BY status_rank ASC, category_matches DESC");
+            case "best-match" -> {
+                sql.append(" ORDER BY status_rank ASC, match_score DESC");
+                sortName = "bestMatch";
+            }
+            default -> {
+                sql.append(" ORDER BY status_rank ASC"); //default status order
+                sortName = "status";
+            }
+        }
+
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            params.add(Math.max(0, limit));
+        }
+
+        return new ListingFilterQuery("filterAndSort." + sortName, sql.toString(), params.toArray());
+    }
+}
@@ -0,0 +1,701 @@
+package com.tungtung.hello;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// In-memory copy of Listings/BelongsTo/InterestedIn that answers /listings/filterAndSort
+// without going to MySQL. Listings live in dense slots so filters are BitSet intersections,
+// and price/deadline orderings are kept presorted per status bucket. A lat/lon grid
+// bounds radius queries to the cells around the caller, and an inverted index answers
+// the search parameter.
+@Component
+public class ListingIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListingIndex.class);
+
+    // Same order as the status_rank CASE in the SQL version (unknown statuses rank last)
+    static final String[] STATUSES = {"open", "taken", "completed", "cancelled"};
+    private static final int STATUS_BUCKETS = STATUSES.length + 1;
+
+    private static final Comparator<IndexedListing> BY_LISTID =
+        Comparator.comparingInt(l -> l.listid);
+    private static final Comparator<IndexedListing> BY_PRICE_DESC =
+        Comparator.comparing((IndexedListing l) -> l.price).reversed().thenComparing(BY_LISTID);
+    // MySQL sorts NULL deadlines first in ascending order
+    private static final Comparator<IndexedListing> BY_DEADLINE_ASC =
+        Comparator.comparing((IndexedListing l) -> l.deadline, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(BY_LISTID);
+
+    private final JdbcTemplate jdbc;
+    private final BestMatchScorer scorer;
+    private final double geoCellDegrees;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean ready = false;
+
+    // slot -> listing, and listid -> slot
+    private List<IndexedListing> slots = new ArrayList<>();
+    private Map<Integer, Integer> slotByListid = new HashMap<>();
+
+    private Map<String, Integer> categoryIdByName = new HashMap<>();
+    private Map<Integer, BitSet> slotsByCategory = new HashMap<>();
+    // Listings with at least one category (filterAndSort inner joins BelongsTo)
+    private BitSet categorized = new BitSet();
+    private BitSet[] slotsByStatus = newStatusBuckets();
+
+    private List<NavigableSet<IndexedListing>> byPrice = newOrderings(BY_PRICE_DESC);
+    private List<NavigableSet<IndexedListing>> byDeadline = newOrderings(BY_DEADLINE_ASC);
+    private List<NavigableSet<IndexedListing>> byListid = newOrderings(BY_LISTID);
+    private GeoGrid geo;
+    private SearchIndex textIndex = new SearchIndex();
+
+    private Map<Integer, Set<Integer>> interestsByUid = new HashMap<>();
+
+    public ListingIndex(JdbcTemplate jdbc, BestMatchScorer scorer,
+                        @Value("${tungtung.listings.geo-cell-degrees:0.1}") double geoCellDegrees) {
+        this.jdbc = jdbc;
+        this.scorer = scorer;
+        this.geoCellDegrees = geoCellDegrees;
+        this.geo = new GeoGrid(geoCellDegrees);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Notified after the index changes (outside the index lock)
+    interface Listener {
+        void onRebuilt();
+
+        // A listing was added, re-read or changed status
+        void onListingChanged(IndexedListing listing);
+
+        void onInterestsChanged(int uid, Set<Integer> categoryIds);
+    }
+
+    void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Keep serving from MySQL if the initial load fails
+            logger.error("Failed to build listing index: {}", e.getMessage(), e);
+        }
+    }
+
+    // Reload everything from MySQL (startup and after /db/seed)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        List<IndexedListing> loaded = jdbc.query("SELECT * FROM Listings ORDER BY listid", (rs, i) -> mapListing(rs));
+
+        Map<String, Integer> categories = new HashMap<>();
+        jdbc.query("SELECT category_id, category_name FROM TaskCategories", rs -> {
+            categories.put(rs.getString("category_name").toLowerCase(), rs.getInt("category_id"));
+        });
+
+        Map<Integer, List<Integer>> categoriesByListid = new HashMap<>();
+        jdbc.query("SELECT listid, category_id FROM BelongsTo", rs -> {
+            categoriesByListid.computeIfAbsent(rs.getInt("listid"), k -> new ArrayList<>()).add(rs.getInt("category_id"));
+        });
+
+        Map<Integer, Set<Integer>> interests = new HashMap<>();
+        jdbc.query("SELECT uid, category_id FROM InterestedIn", rs -> {
+            interests.computeIfAbsent(rs.getInt("uid"), k -> new LinkedHashSet<>()).add(rs.getInt("category_id"));
+        });
+
+        lock.writeLock().lock();
+        try {
+            slots = new ArrayList<>(loaded.size());
+            slotByListid = new HashMap<>();
+            categoryIdByName = categories;
+            slotsByCategory = new HashMap<>();
+            categorized = new BitSet();
+            slotsByStatus = newStatusBuckets();
+            byPrice = newOrderings(BY_PRICE_DESC);
+            byDeadline = newOrderings(BY_DEADLINE_ASC);
+            byListid = newOrderings(BY_LISTID);
+            geo = new GeoGrid(geoCellDegrees);
+            textIndex = new SearchIndex();
+            interestsByUid = interests;
+
+            for (IndexedListing listing : loaded) {
+                List<Integer> categoryIds = categoriesByListid.getOrDefault(listing.listid, List.of());
+                listing.categoryIds = categoryIds.stream().mapToInt(Integer::intValue).toArray();
+                add(listing);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("Listing index built with {} listings in {} ms", loaded.size(), System.currentTimeMillis() - start);
+        listeners.forEach(Listener::onRebuilt);
+    }
+
+    // Re-read a single listing (and its categories) after it was inserted or changed. The
+    // read happens outside the lock, so a setSeats for a later write can get in first; a
+    // copy no newer than the indexed one is dropped rather than rolling that back (writes
+    // to Listings bump version, so a real change always reads newer).
+    public void refresh(int listid) {
+        if (!ready) return;
+        List<IndexedListing> rows = jdbc.query("SELECT * FROM Listings WHERE listid = ?", (rs, i) -> mapListing(rs), listid);
+        if (rows.isEmpty()) return;
+        IndexedListing listing = rows.get(0);
+        listing.categoryIds = jdbc.queryForList("SELECT category_id FROM BelongsTo WHERE listid = ?", Integer.class, listid)
+            .stream().mapToInt(Integer::intValue).toArray();
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByListid.get(listid);
+            if (slot == null) {
+                add(listing);
+            } else {
+                IndexedListing old = slots.get(slot);
+                if (listing.version <= old.version) return;
+                unindex(old, slot);
+                listing.slot = slot;
+                slots.set(slot, listing);
+                index(listing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        listeners.forEach(l -> l.onListingChanged(listing));
+    }
+
+    public void setStatus(int listid, String status) {
+        if (!ready) return;
+        IndexedListing listing;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByListid.get(listid);
+            if (slot == null) return;
+            listing = slots.get(slot);
+            unindexStatus(listing, slot);
+            listing.status = status;
+            indexStatus(listing);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        listeners.forEach(l -> l.onListingChanged(listing));
+    }
+
+    // After an assign or unassign, which only change status and assigned_count, so the text,
+    // geo and category postings are left alone. Concurrent assigns can get here out of order;
+    // version says which one is newer, and a closed listing has no more seat changes to apply.
+    public void setSeats(int listid, String status, int assignedCount, int version) {
+        if (!ready) return;
+        IndexedListing listing;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByListid.get(listid);
+            if (slot == null) return;
+            listing = slots.get(slot);
+            if (version <= listing.version || "completed".equals(listing.status) || "cancelled".equals(listing.status)) return;
+            if (!status.equals(listing.status)) {
+                unindexStatus(listing, slot);
+                listing.status = status;
+                indexStatus(listing);
+            }
+            listing.assignedCount = assignedCount;
+            listing.version = version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        listeners.forEach(l -> l.onListingChanged(listing));
+    }
+
+    public void refreshInterests(int uid) {
+        if (!ready) return;
+        Set<Integer> categories = new LinkedHashSet<>(
+            jdbc.queryForList("SELECT category_id FROM InterestedIn WHERE uid = ?", Integer.class, uid));
+        lock.writeLock().lock();
+        try {
+            interestsByUid.put(uid, categories);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        listeners.forEach(l -> l.onInterestsChanged(uid, categories));
+    }
+
+    Set<Integer> interestsOf(int uid) {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(interestsByUid.getOrDefault(uid, Set.of()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Listeners hold on to IndexedListings, whose status, assigned_count and version
+    // setSeats/setStatus change in place; these read them consistently
+    String statusOf(IndexedListing listing) {
+        lock.readLock().lock();
+        try {
+            return listing.status;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<Map<String, Object>> baseRows(List<IndexedListing> listings) {
+        lock.readLock().lock();
+        try {
+            List<Map<String, Object>> rows = new ArrayList<>(listings.size());
+            for (IndexedListing listing : listings) rows.add(listing.baseRow());
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<IndexedListing> openListings(Set<Integer> categoryIds) {
+        lock.readLock().lock();
+        try {
+            BitSet matches;
+            if (categoryIds.isEmpty()) {
+                matches = (BitSet) categorized.clone();
+            } else {
+                matches = new BitSet();
+                for (int categoryId : categoryIds) {
+                    BitSet members = slotsByCategory.get(categoryId);
+                    if (members != null) matches.or(members);
+                }
+            }
+            matches.and(slotsByStatus[statusRank("open") - 1]);
+            List<IndexedListing> open = new ArrayList<>(matches.cardinality());
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                open.add(slots.get(slot));
+            }
+            return open;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Page(List<Map<String, Object>> rows, String nextCursor) {}
+
+    // Same contract as the SQL in M1Controller.filterAndSortListings. radiusKm, limit and cursor
+    // are optional; a next cursor is only issued when limit is set and the page came back full.
+    // explain adds the weighted components of match_score to each row.
+    public Page filterAndSort(List<String> categories, String status, String search,
+                              String sort, int uid, double latitude, double longitude,
+                              Double radiusKm, Integer limit, String cursor, boolean explain) {
+        String mode = sortMode(sort, !search.isEmpty());
+        PageCursor after = cursor == null || cursor.isEmpty() ? null : PageCursor.decode(cursor, mode);
+
+        lock.readLock().lock();
+        try {
+            BitSet candidates = (BitSet) categorized.clone();
+
+            if (radiusKm != null) {
+                BitSet nearby = new BitSet();
+                geo.forEachCandidate(latitude, longitude, radiusKm, slot -> {
+                    if (slots.get(slot).distanceKm(latitude, longitude) <= radiusKm) nearby.set(slot);
+                });
+                candidates.and(nearby);
+            }
+
+            Set<Integer> requested = null;
+            if (categories != null && !categories.isEmpty()) {
+                requested = new HashSet<>();
+                for (String name : new LinkedHashSet<>(categories)) {
+                    Integer categoryId = categoryIdByName.get(name.toLowerCase());
+                    BitSet members = categoryId == null ? null : slotsByCategory.get(categoryId);
+                    if (members == null) return new Page(new ArrayList<>(), null);
+                    candidates.and(members);
+                    requested.add(categoryId);
+                }
+            }
+
+            if (!"all".equals(status)) {
+                int rank = statusRank(status);
+                if (rank > STATUSES.length) return new Page(new ArrayList<>(), null);
+                candidates.and(slotsByStatus[rank - 1]);
+            }
+
+            Map<Integer, Double> relevance = null;
+            if (!search.isEmpty()) {
+                SearchIndex.Result hits = textIndex.search(search);
+                if (hits != null) {
+                    candidates.and(hits.matches());
+                    relevance = hits.scores();
+                } else {
+                    // Nothing tokenizable (e.g. only punctuation): plain substring match
+                    String q = search.toLowerCase();
+                    for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                        if (!slots.get(slot).matches(q)) candidates.clear(slot);
+                    }
+                }
+            }
+
+            // Reuse the first page's clock so deadline-based scores don't drift between pages
+            long nowSeconds = after != null ? after.nowSeconds() : System.currentTimeMillis() / 1000;
+            // The SQL only joins the requested categories' BelongsTo rows to InterestedIn, so
+            // category_matches (and with it match_score) counts interests among those alone
+            Set<Integer> interests = interestsByUid.getOrDefault(uid, Set.of());
+            if (requested != null) {
+                Set<Integer> counted = new HashSet<>(interests);
+                counted.retainAll(requested);
+                interests = counted;
+            }
+            Caller caller = new Caller(interests, latitude, longitude, nowSeconds, relevance, scorer, explain);
+            int max = limit == null ? Integer.MAX_VALUE : Math.max(0, limit);
+
+            List<Map<String, Object>> rows = switch (mode) {
+                case "price" -> walk(byPrice, candidates, caller, max, probe(mode, after), after);
+                case "deadline" -> walk(byDeadline, candidates, caller, max, probe(mode, after), after);
+                case "distance" -> topK(candidates, caller, max, after, l -> l.distanceKm(latitude, longitude), false);
+                case "category" -> topK(candidates, caller, max, after, l -> l.categoryMatches(caller.interests()), true);
+                case "best-match" -> topK(candidates, caller, max, after, l -> bestMatchKey(l.matchScore(caller)), true);
+                case "relevance" -> topK(candidates, caller, max, after, l -> caller.relevance(l.slot), true);
+                default -> walk(byListid, candidates, caller, max, probe(mode, after), after);
+            };
+
+            String next = null;
+            if (limit != null && max > 0 && rows.size() == max) {
+                next = nextCursor(mode, rows.get(rows.size() - 1), nowSeconds).encode();
+            }
+            return new Page(rows, next);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Searches without an explicit sort are ranked by relevance within each status
+    private static String sortMode(String sort, boolean searching) {
+        String mode = sort.toLowerCase();
+        return switch (mode) {
+            case "price", "deadline", "distance", "category", "best-match" -> mode;
+            case "relevance" -> searching ? mode : "default";
+            default -> searching ? "relevance" : "default";
+        };
+    }
+
+    private static double bestMatchKey(Double score) {
+        // NULL scores (no deadline) sort last, like MySQL's DESC ordering
+        return score == null ? Double.NEGATIVE_INFINITY : score;
+    }
+
+    private static PageCursor nextCursor(String mode, Map<String, Object> last, long nowSeconds) {
+        String key = switch (mode) {
+            case "price" -> ((BigDecimal) last.get("price")).toPlainString();
+            case "deadline" -> last.get("deadline") == null ? "" : Long.toString(((Timestamp) last.get("deadline")).getTime());
+            case "distance" -> Double.toString((Double) last.get("distance"));
+            case "category" -> Double.toString((Long) last.get("category_matches"));
+            case "best-match" -> Double.toString(bestMatchKey((Double) last.get("match_score")));
+            case "relevance" -> Double.toString((Double) last.get("relevance"));
+            default -> "";
+        };
+        return new PageCursor(mode, ((Long) last.get("status_rank")).intValue(), key, (Integer) last.get("listid"), nowSeconds);
+    }
+
+    // Stand-in listing holding the cursor's sort key, for tailSet() on the presorted orderings
+    private static IndexedListing probe(String mode, PageCursor after) {
+        if (after == null) return null;
+        IndexedListing probe = new IndexedListing();
+        probe.listid = after.id();
+        try {
+            if ("price".equals(mode)) probe.price = new BigDecimal(after.key());
+            if ("deadline".equals(mode) && !after.key().isEmpty()) probe.deadline = new Timestamp(Long.parseLong(after.key()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return probe;
+    }
+
+    // Emit candidates in presorted order, status bucket by status bucket, resuming after the cursor
+    private List<Map<String, Object>> walk(List<NavigableSet<IndexedListing>> ordering, BitSet candidates,
+                                           Caller caller, int limit, IndexedListing probe, PageCursor after) {
+        List<Map<String, Object>> result = new ArrayList<>(Math.min(limit, candidates.cardinality()));
+        for (int bucket = 0; bucket < STATUS_BUCKETS && result.size() < limit; bucket++) {
+            if (after != null && bucket + 1 < after.statusRank()) continue;
+            boolean resume = after != null && bucket + 1 == after.statusRank();
+
+            BitSet inBucket = (BitSet) candidates.clone();
+            inBucket.and(slotsByStatus[bucket]);
+            int remaining = inBucket.cardinality();
+            if (remaining == 0) continue;
+
+            NavigableSet<IndexedListing> sorted = ordering.get(bucket);
+            Comparator<? super IndexedListing> order = sorted.comparator();
+            // Few matches in a big bucket: sorting the matches beats scanning the ordering
+            if (remaining * 16L < sorted.size()) {
+                List<IndexedListing> matches = new ArrayList<>(remaining);
+                for (int slot = inBucket.nextSetBit(0); slot >= 0; slot = inBucket.nextSetBit(slot + 1)) {
+                    IndexedListing listing = slots.get(slot);
+                    if (resume && order.compare(listing, probe) <= 0) continue;
+                    matches.add(listing);
+                }
+                matches.sort(order);
+                for (IndexedListing listing : matches) {
+                    if (result.size() >= limit) break;
+                    result.add(listing.toRow(caller));
+                }
+                continue;
+            }
+
+            for (IndexedListing listing : resume ? sorted.tailSet(probe, false) : sorted) {
+                if (result.size() >= limit || remaining == 0) break;
+                if (!inBucket.get(listing.slot)) continue;
+                result.add(listing.toRow(caller));
+                remaining--;
+            }
+        }
+        return result;
+    }
+
+    // For orderings that depend on the caller (location, interests). Keeps only the best
+    // `limit` candidates past the cursor in a heap, so rows are built for the winners only.
+    private List<Map<String, Object>> topK(BitSet candidates, Caller caller, int limit, PageCursor after,
+                                           ToDoubleFunction<IndexedListing> key, boolean descending) {
+        Comparator<Scored> order = Comparator.comparingInt(Scored::statusRank)
+            .thenComparing(descending
+                ? Comparator.comparingDouble(Scored::key).reversed()
+                : Comparator.comparingDouble(Scored::key))
+            .thenComparingInt(Scored::listid);
+
+        Scored last = null;
+        if (after != null) {
+            try {
+                last = new Scored(null, after.id(), after.statusRank(), Double.parseDouble(after.key()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        TopK<Scored> best = new TopK<>(limit, order, candidates.cardinality());
+        for (int slot = candidates.nextSetBit(0); slot >= 0 && limit > 0; slot = candidates.nextSetBit(slot + 1)) {
+            IndexedListing listing = slots.get(slot);
+            Scored scored = new Scored(listing, listing.listid, statusRank(listing.status), key.applyAsDouble(listing));
+            if (last != null && order.compare(scored, last) <= 0) continue;
+            best.offer(scored);
+        }
+
+        List<Scored> winners = best.sorted();
+        List<Map<String, Object>> result = new ArrayList<>(winners.size());
+        for (Scored scored : winners) result.add(scored.listing().toRow(caller));
+        return result;
+    }
+
+    private void add(IndexedListing listing) {
+        listing.slot = slots.size();
+        slots.add(listing);
+        slotByListid.put(listing.listid, listing.slot);
+        index(listing);
+    }
+
+    private void index(IndexedListing listing) {
+        int slot = listing.slot;
+        for (int categoryId : listing.categoryIds) {
+            slotsByCategory.computeIfAbsent(categoryId, k -> new BitSet()).set(slot);
+        }
+        if (listing.categoryIds.length > 0) categorized.set(slot);
+        geo.add(slot, listing.lat, listing.lon);
+        textIndex.add(slot, listing.listingName, listing.description, listing.address);
+        indexStatus(listing);
+    }
+
+    private void unindex(IndexedListing listing, int slot) {
+        for (int categoryId : listing.categoryIds) {
+            BitSet members = slotsByCategory.get(categoryId);
+            if (members != null) members.clear(slot);
+        }
+        categorized.clear(slot);
+        geo.remove(slot, listing.lat, listing.lon);
+        textIndex.remove(slot, listing.listingName, listing.description, listing.address);
+        unindexStatus(listing, slot);
+    }
+
+    // Status changes only move a listing between buckets and orderings
+    private void indexStatus(IndexedListing listing) {
+        int bucket = statusRank(listing.status) - 1;
+        slotsByStatus[bucket].set(listing.slot);
+        byPrice.get(bucket).add(listing);
+        byDeadline.get(bucket).add(listing);
+        byListid.get(bucket).add(listing);
+    }
+
+    private void unindexStatus(IndexedListing listing, int slot) {
+        int bucket = statusRank(listing.status) - 1;
+        slotsByStatus[bucket].clear(slot);
+        byPrice.get(bucket).remove(listing);
+        byDeadline.get(bucket).remove(listing);
+        byListid.get(bucket).remove(listing);
+    }
+
+    static int statusRank(String status) {
+        if (status != null) {
+            for (int i = 0; i < STATUSES.length; i++) {
+                if (STATUSES[i].equalsIgnoreCase(status)) return i + 1;
+            }
+        }
+        return STATUSES.length + 1;
+    }
+
+    private static BitSet[] newStatusBuckets() {
+        BitSet[] buckets = new BitSet[STATUS_BUCKETS];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new BitSet();
+        return buckets;
+    }
+
+    private static List<NavigableSet<IndexedListing>> newOrderings(Comparator<IndexedListing> comparator) {
+        List<NavigableSet<IndexedListing>> orderings = new ArrayList<>(STATUS_BUCKETS);
+        for (int i = 0; i < STATUS_BUCKETS; i++) orderings.add(new TreeSet<>(comparator));
+        return orderings;
+    }
+
+    private static IndexedListing mapListing(ResultSet rs) throws SQLException {
+        IndexedListing listing = new IndexedListing();
+        listing.listid = rs.getInt("listid");
+        listing.listingName = rs.getString("listing_name");
+        listing.description = rs.getString("description");
+        listing.capacity = (Integer) rs.getObject("capacity");
+        listing.price = rs.getBigDecimal("price");
+        listing.duration = rs.getInt("duration");
+        listing.address = rs.getString("address");
+        listing.longitude = rs.getBigDecimal("longitude");
+        listing.latitude = rs.getBigDecimal("latitude");
+        listing.lat = listing.latitude.doubleValue();
+        listing.lon = listing.longitude.doubleValue();
+        listing.postingTime = rs.getTimestamp("posting_time");
+        listing.deadline = rs.getTimestamp("deadline");
+        listing.status = rs.getString("status");
+        listing.assignedCount = rs.getInt("assigned_count");
+        listing.version = rs.getInt("version");
+        listing.searchText = String.join("\n",
+            lower(listing.listingName), lower(listing.description), lower(listing.address));
+        return listing;
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase();
+    }
+
+    private record Caller(Set<Integer> interests, double latitude, double longitude, long nowSeconds,
+                          Map<Integer, Double> relevanceBySlot, BestMatchScorer scorer, boolean explain) {
+
+        double relevance(int slot) {
+            return relevanceBySlot == null ? 0 : relevanceBySlot.getOrDefault(slot, 0.0);
+        }
+    }
+
+    private record Scored(IndexedListing listing, int listid, int statusRank, double key) {}
+
+    static final class IndexedListing {
+        int slot;
+        int listid;
+        String listingName;
+        String description;
+        Integer capacity;
+        BigDecimal price;
+        int duration;
+        String address;
+        BigDecimal longitude;
+        BigDecimal latitude;
+        double lat;
+        double lon;
+        Timestamp postingTime;
+        Timestamp deadline;
+        String status;
+        int assignedCount;
+        int version;
+        int[] categoryIds;
+        // name, description and address lowercased, newline separated
+        String searchText;
+
+        boolean matches(String q) {
+            // Mirrors LIKE '%q%' on each column; q can't span the separator unless it contains one
+            if (q.indexOf('\n') >= 0) return false;
+            return searchText.contains(q);
+        }
+
+        double distanceKm(double fromLat, double fromLon) {
+            return GeoGrid.haversineKm(fromLat, fromLon, lat, lon);
+        }
+
+        // Just the Listings columns (L.*)
+        Map<String, Object> baseRow() {
+            Map<String, Object> row = new LinkedHashMap<>(24);
+            row.put("listid", listid);
+            row.put("listing_name", listingName);
+            row.put("description", description);
+            row.put("capacity", capacity);
+            row.put("price", price);
+            row.put("duration", duration);
+            row.put("address", address);
+            row.put("longitude", longitude);
+            row.put("latitude", latitude);
+            row.put("posting_time", postingTime);
+            row.put("deadline", deadline);
+            row.put("status", status);
+            row.put("assigned_count", assignedCount);
+            row.put("version", version);
+            return row;
+        }
+
+        long categoryMatches(Set<Integer> interests) {
+            long matches = 0;
+            for (int categoryId : categoryIds) {
+                if (interests.contains(categoryId)) matches++;
+            }
+            return matches;
+        }
+
+        private Long deadlineSeconds(long nowSeconds) {
+            return deadline == null ? null : deadline.getTime() / 1000 - nowSeconds;
+        }
+
+        Double matchScore(Caller caller) {
+            return caller.scorer().score(categoryMatches(caller.interests()), price.doubleValue(), duration,
+                deadlineSeconds(caller.nowSeconds()), distanceKm(caller.latitude(), caller.longitude()));
+        }
+
+        // Row shaped like L.* plus the computed columns of the SQL version (distance is in km)
+        Map<String, Object> toRow(Caller caller) {
+            Map<String, Object> row = baseRow();
+            row.put("category_matches", categoryMatches(caller.interests()));
+            row.put("distance", distanceKm(caller.latitude(), caller.longitude()));
+            row.put("deadline_seconds", deadlineSeconds(caller.nowSeconds()));
+            row.put("match_score", matchScore(caller));
+            row.put("status_rank", (long) statusRank(status));
+            if (caller.relevanceBySlot() != null) row.put("relevance", caller.relevance(slot));
+            if (caller.explain()) {
+                row.put("match_explain", caller.scorer().explain(categoryMatches(caller.interests()), price.doubleValue(),
+                    duration, deadlineSeconds(caller.nowSeconds()), distanceKm(caller.latitude(), caller.longitude())));
+            }
+            return row;
+        }
+    }
+}
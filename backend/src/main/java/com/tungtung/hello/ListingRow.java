@@ -0,0 +1,147 @@
+package com.tungtung.hello;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+// A Listings row for the list endpoints. Only the selected fields are read and written;
+// the others stay null. Serializes to the same JSON as the old column maps.
+@JsonSerialize(using = ListingRow.Serializer.class)
+public record ListingRow(Set<ListingRow.Field> fields, int listid, String listingName, String description,
+                         Integer capacity, BigDecimal price, Integer duration, String address,
+                         BigDecimal longitude, BigDecimal latitude, Timestamp postingTime, Timestamp deadline,
+                         String status, Integer assignedCount, Integer version) {
+
+    // In table order, so SELECT * and the full projection serialize alike. Field sets are
+    // EnumSets so every row set iterates (and selects) in this order.
+    public enum Field implements Projections.Field {
+        LISTID("listid"),
+        LISTING_NAME("listing_name"),
+        DESCRIPTION("description"),
+        CAPACITY("capacity"),
+        PRICE("price"),
+        DURATION("duration"),
+        ADDRESS("address"),
+        LONGITUDE("longitude"),
+        LATITUDE("latitude"),
+        POSTING_TIME("posting_time"),
+        DEADLINE("deadline"),
+        STATUS("status"),
+        ASSIGNED_COUNT("assigned_count"),
+        VERSION("version");
+
+        private final String name;
+
+        Field(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String json() {
+            return name;
+        }
+
+        @Override
+        public String sql() {
+            return name;
+        }
+    }
+
+    public static final Set<Field> ALL = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+    // What /info/listings has always returned
+    public static final Set<Field> SUMMARY = Collections.unmodifiableSet(
+        EnumSet.of(Field.LISTID, Field.LISTING_NAME, Field.STATUS, Field.PRICE, Field.ADDRESS));
+
+    public static Set<Field> parseFields(String fields, Set<Field> defaults) {
+        return Projections.parse(fields, Field.class, defaults, Field.LISTID);
+    }
+
+    public static String select(Set<Field> fields) {
+        return "SELECT " + Projections.columns(fields) + " FROM Listings";
+    }
+
+    // Reads the selected columns by position, in the order select() lists them
+    public static RowMapper<ListingRow> mapper(Set<Field> fields) {
+        return (rs, rowNum) -> {
+            int listid = 0;
+            String listingName = null;
+            String description = null;
+            Integer capacity = null;
+            BigDecimal price = null;
+            Integer duration = null;
+            String address = null;
+            BigDecimal longitude = null;
+            BigDecimal latitude = null;
+            Timestamp postingTime = null;
+            Timestamp deadline = null;
+            String status = null;
+            Integer assignedCount = null;
+            Integer version = null;
+            int column = 1;
+            for (Field field : fields) {
+                switch (field) {
+                    case LISTID -> listid = rs.getInt(column);
+                    case LISTING_NAME -> listingName = rs.getString(column);
+                    case DESCRIPTION -> description = rs.getString(column);
+                    case CAPACITY -> capacity = rs.getObject(column, Integer.class);
+                    case PRICE -> price = rs.getBigDecimal(column);
+                    case DURATION -> duration = rs.getObject(column, Integer.class);
+                    case ADDRESS -> address = rs.getString(column);
+                    case LONGITUDE -> longitude = rs.getBigDecimal(column);
+                    case LATITUDE -> latitude = rs.getBigDecimal(column);
+                    case POSTING_TIME -> postingTime = rs.getTimestamp(column);
+                    case DEADLINE -> deadline = rs.getTimestamp(column);
+                    case STATUS -> status = rs.getString(column);
+                    case ASSIGNED_COUNT -> assignedCount = rs.getObject(column, Integer.class);
+                    case VERSION -> version = rs.getObject(column, Integer.class);
+                }
+                column++;
+            }
+            return new ListingRow(fields, listid, listingName, description, capacity, price, duration, address,
+                longitude, latitude, postingTime, deadline, status, assignedCount, version);
+        };
+    }
+
+    public static final class Serializer extends StdSerializer<ListingRow> {
+
+        public Serializer() {
+            super(ListingRow.class);
+        }
+
+        @Override
+        public void serialize(ListingRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            for (Field field : row.fields()) {
+                json.writeFieldName(field.json());
+                switch (field) {
+                    case LISTID -> json.writeNumber(row.listid());
+                    case LISTING_NAME -> json.writeString(row.listingName());
+                    case DESCRIPTION -> json.writeString(row.description());
+                    case CAPACITY -> Projections.writeNumber(json, row.capacity());
+                    case PRICE -> json.writeNumber(row.price());
+                    case DURATION -> Projections.writeNumber(json, row.duration());
+                    case ADDRESS -> json.writeString(row.address());
+                    case LONGITUDE -> json.writeNumber(row.longitude());
+                    case LATITUDE -> json.writeNumber(row.latitude());
+                    // Dates go through the provider so they follow the mapper's date settings
+                    case POSTING_TIME -> provider.defaultSerializeValue(row.postingTime(), json);
+                    case DEADLINE -> provider.defaultSerializeValue(row.deadline(), json);
+                    case STATUS -> json.writeString(row.status());
+                    case ASSIGNED_COUNT -> Projections.writeNumber(json, row.assignedCount());
+                    case VERSION -> Projections.writeNumber(json, row.version());
+                }
+            }
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.tungtung.hello;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+// Read-through caches for small lookups that rarely change: task categories, user
+// names, listing posters and categories, and user preferences. Caffeine bounds each
+// cache by size (W-TinyLFU eviction) and age; the write endpoints that change the
+// underlying rows invalidate the affected entries straight away.
+@Component
+public class LookupCache {
+
+    private final JdbcTemplate jdbc;
+
+    private final Cache<Boolean, List<Map<String, Object>>> taskCategories;
+    private final Cache<Integer, String> userNames;
+    private final Cache<Integer, Map<String, Object>> listingPosters;
+    private final Cache<Integer, List<String>> listingCategories;
+    private final Cache<Integer, List<String>> preferences;
+
+    public LookupCache(JdbcTemplate jdbc,
+                       @Value("${tungtung.cache.max-size:10000}") long maxSize,
+                       @Value("${tungtung.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.jdbc = jdbc;
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        this.taskCategories = newCache(1, ttl);
+        this.userNames = newCache(maxSize, ttl);
+        this.listingPosters = newCache(maxSize, ttl);
+        this.listingCategories = newCache(maxSize, ttl);
+        this.preferences = newCache(maxSize, ttl);
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maxSize, Duration ttl) {
+        return Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+    }
+
+    public List<Map<String, Object>> taskCategories() {
+        return taskCategories.get(Boolean.TRUE, k -> List.copyOf(
+            jdbc.queryForList("SELECT * FROM TaskCategories").stream().map(Collections::unmodifiableMap).toList()));
+    }
+
+    public String userName(int uid) {
+        return userNames.get(uid, k -> jdbc.queryForObject("SELECT name FROM Users WHERE uid = ?", String.class, uid));
+    }
+
+    public Map<String, Object> listingPoster(int listid) {
+        return listingPosters.get(listid, k -> Collections.unmodifiableMap(jdbc.queryForMap(
+            "SELECT U.uid, U.name, U.profile_picture FROM Posts P JOIN Users U ON P.uid = U.uid WHERE P.listid = ?", listid)));
+    }
+
+    public List<String> listingCategories(int listid) {
+        return listingCategories.get(listid, k -> List.copyOf(jdbc.queryForList("""
+            SELECT T.category_name
+            FROM BelongsTo B
+            JOIN TaskCategories T ON B.category_id = T.category_id
+            WHERE B.listid = ?
+            """, String.class, listid)));
+    }
+
+    public List<String> preferences(int uid) {
+        return preferences.get(uid, k -> List.copyOf(jdbc.queryForList("""
+            SELECT c.category_name
+            FROM InterestedIn i
+            NATURAL JOIN TaskCategories c
+            WHERE i.uid = ?
+            """, String.class, uid)));
+    }
+
+    // A new or changed user (signup)
+    public void invalidateUser(int uid) {
+        userNames.invalidate(uid);
+        preferences.invalidate(uid);
+    }
+
+    public void invalidatePreferences(int uid) {
+        preferences.invalidate(uid);
+    }
+
+    // A new or changed listing (createListing)
+    public void invalidateListing(int listid) {
+        listingPosters.invalidate(listid);
+        listingCategories.invalidate(listid);
+    }
+
+    // Everything may have changed (seedDatabase)
+    public void invalidateAll() {
+        taskCategories.invalidateAll();
+        userNames.invalidateAll();
+        listingPosters.invalidateAll();
+        listingCategories.invalidateAll();
+        preferences.invalidateAll();
+    }
+
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("task_categories", stats(taskCategories));
+        stats.put("user_names", stats(userNames));
+        stats.put("listing_posters", stats(listingPosters));
+        stats.put("listing_categories", stats(listingCategories));
+        stats.put("preferences", stats(preferences));
+        return stats;
+    }
+
+    private static Map<String, Object> stats(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("size", cache.estimatedSize());
+        row.put("hits", stats.hitCount());
+        row.put("misses", stats.missCount());
+        row.put("hit_rate", stats.hitRate());
+        row.put("evictions", stats.evictionCount());
+        row.put("average_load_ms", stats.averageLoadPenalty() / 1e6);
+        return row;
+    }
+}
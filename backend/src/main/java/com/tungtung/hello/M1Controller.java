@@ -1,15 +1,29 @@
 package com.tungtung.hello;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -20,11 +34,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,11 +51,57 @@ import org.slf4j.LoggerFactory;
 public class M1Controller {
 
     private final JdbcTemplate jdbc;
+    private final ListingIndex listingIndex;
+    private final BestMatchScorer scorer;
+    private final FeedService feedService;
+    private final AssignmentService assignments;
+    private final EarningsService earnings;
+    private final ProfileService profiles;
+    private final LookupCache lookups;
+    private final NdjsonStreamer ndjson;
+    private final UserListingGraph graph;
+    private final GraphAnalytics analytics;
+    private final PasswordHasher passwords;
+    private final SignupFilter signupFilter;
+    private final Metrics metrics;
+    private final SlowQueryLog slowQueries;
+    // Where signup and login continue once the password pool is done with them, so that
+    // pool only ever derives keys and never waits on JDBC
+    private final Executor requestExecutor;
 
     private static final Logger logger = LoggerFactory.getLogger(M1Controller.class);
 
-    public M1Controller(JdbcTemplate jdbc) {
+    private static final int MAX_HYDRATE_LISTINGS = 1000;
+    private static final int MAX_GRAPH_HOPS = 6;
+    private static final int MAX_GRAPH_NODES = 50000;
+    private static final int MAX_TRUST_ROWS = 1000;
+
+    // Bulk graph/info queries, shared by the JSON and ?format=ndjson handlers
+    private static final String POSTINGS_SQL = "SELECT uid, listid FROM Posts";
+    private static final String ASSIGNMENTS_SQL = "SELECT uid, listid FROM AssignedTo";
+
+    public M1Controller(JdbcTemplate jdbc, ListingIndex listingIndex, BestMatchScorer scorer, FeedService feedService,
+                        AssignmentService assignments, EarningsService earnings, ProfileService profiles,
+                        LookupCache lookups, NdjsonStreamer ndjson, UserListingGraph graph,
+                        GraphAnalytics analytics, PasswordHasher passwords, SignupFilter signupFilter,
+                        Metrics metrics, SlowQueryLog slowQueries,
+                        @Qualifier("applicationTaskExecutor") Executor requestExecutor) {
         this.jdbc = jdbc;
+        this.listingIndex = listingIndex;
+        this.scorer = scorer;
+        this.feedService = feedService;
+        this.assignments = assignments;
+        this.earnings = earnings;
+        this.profiles = profiles;
+        this.lookups = lookups;
+        this.ndjson = ndjson;
+        this.graph = graph;
+        this.analytics = analytics;
+        this.passwords = passwords;
+        this.signupFilter = signupFilter;
+        this.metrics = metrics;
+        this.slowQueries = slowQueries;
+        this.requestExecutor = requestExecutor;
     }
 
     @RequestMapping("/hello")
@@ -49,127 +112,191 @@ public class M1Controller {
     // Get all the task categories
     @GetMapping("/taskcategories")
     public List<Map<String, Object>> ListTaskCategories() {
-        return jdbc.queryForList("SELECT * FROM TaskCategories");
+        return lookups.taskCategories();
     }
 
     @GetMapping("/listings")
-    //see all the listings
-    public List<Map<String, Object>> ListListings() {
-        return jdbc.queryForList("SELECT * FROM Listings");
+    //see all the listings (?fields=listid,price,... for just those columns)
+    public ResponseEntity<List<ListingRow>> ListListings(
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) String fields
+    ) {
+        Set<ListingRow.Field> selected = selectFields(() -> ListingRow.parseFields(fields, ListingRow.ALL));
+        return pageById(ListingRow.select(selected), "listid", limit, cursor, ListingRow.mapper(selected), ListingRow::listid);
+    }
+
+    // Sparse fieldsets: an unknown field name is the client's mistake
+    private static <F> Set<F> selectFields(Supplier<Set<F>> parse) {
+        try {
+            return parse.get();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Keyset pagination over a table ordered by its id. Without limit or cursor this is the
+    // plain unpaged query; otherwise the next page starts after the id in X-Next-Cursor.
+    private <T> ResponseEntity<List<T>> pageById(String select, String idColumn, Integer limit, String cursor,
+                                                 RowMapper<T> rowMapper, ToIntFunction<T> idOf) {
+        if (limit == null && (cursor == null || cursor.isEmpty())) {
+            return ResponseEntity.ok(jdbc.query(select, rowMapper));
+        }
+
+        StringBuilder sql = new StringBuilder(select);
+        List<Object> params = new ArrayList<>();
+        if (cursor != null && !cursor.isEmpty()) {
+            sql.append(" WHERE ").append(idColumn).append(" > ?");
+            params.add(decodeCursor(cursor, "id").id());
+        }
+        sql.append(" ORDER BY ").append(idColumn);
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            params.add(Math.max(0, limit));
+        }
+
+        List<T> rows = jdbc.query(sql.toString(), rowMapper, params.toArray());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (limit != null && limit > 0 && rows.size() == limit) {
+            int lastId = idOf.applyAsInt(rows.get(rows.size() - 1));
+            response.header(PageCursor.HEADER, PageCursor.afterId(lastId).encode());
+        }
+        return response.body(rows);
+    }
+
+    private PageCursor decodeCursor(String cursor, String sort) {
+        try {
+            return PageCursor.decode(cursor, sort);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping("/listings/filterAndSort")
-    public List<Map<String, Object>> filterAndSortListings(
+    public ResponseEntity<List<Map<String, Object>>> filterAndSortListings(
         @RequestParam(required = false) List<String> categories,
         @RequestParam(defaultValue = "all") String status,
         @RequestParam(defaultValue = "") String search,
         @RequestParam(defaultValue = "--") String sort,
         @RequestParam int uid,
         @RequestParam double latitude,
-        @RequestParam double longitude
+        @RequestParam double longitude,
+        @RequestParam(name = "radius_km", required = false) Double radiusKm,
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "false") boolean hydrate,
+        @RequestParam(defaultValue = "false") boolean explain
     ) {
-        StringBuilder sql = new StringBuilder("""
-            SELECT 
-                L.*, 
-                COUNT(DISTINCT II.category_id) AS category_matches,
-                SQRT(POW(L.latitude - ?, 2) + POW(L.longitude - ?, 2)) AS distance,
-                UNIX_TIMESTAMP(L.deadline) - UNIX_TIMESTAMP(NOW()) AS deadline_seconds,
-                -- Weighted best match score (adjust weights here)
-                (
-                    COUNT(DISTINCT II.category_id) * 75
-                    + (L.price/L.duration) * 10
-                    - (UNIX_TIMESTAMP(L.deadline) - UNIX_TIMESTAMP(NOW())) / 6000000 + 20
-                    - SQRT(POW(L.latitude - ?, 2) + POW(L.longitude - ?, 2)) * 1 + 255
-                ) AS match_score,
-                CASE L.status 
-                    WHEN 'open' THEN 1 
-                    WHEN 'taken' THEN 2 
-                    WHEN 'completed' THEN 3 
-                    WHEN 'cancelled' THEN 4 
-                    ELSE 5 
-                END AS status_rank
-            FROM Listings L
-            JOIN BelongsTo B ON L.listid = B.listid
-            JOIN TaskCategories T ON B.category_id = T.category_id
-            LEFT JOIN InterestedIn II 
-                ON B.category_id = II.category_id AND II.uid = ?
-            WHERE 1=1
-        """);
-
-        List<Object> params = new ArrayList<>();
-        params.add(latitude);
-        params.add(longitude);
-        params.add(latitude);
-        params.add(longitude);
-        params.add(uid);
-
-        if (categories != null && !categories.isEmpty()) {
-            sql.append(" AND T.category_name IN (")
-            .append("?,".repeat(categories.size() - 1))
-            .append("?)");
-            params.addAll(categories);
+        // Hydration issues IN lists with one placeholder per row, so it gets the same cap as
+        // POST /listings/hydrate
+        if (hydrate && (limit == null || limit > MAX_HYDRATE_LISTINGS)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "hydrate needs a limit of at most " + MAX_HYDRATE_LISTINGS);
         }
-
-        if (!"all".equals(status)) {
-            sql.append(" AND L.status = ?");
-            params.add(status);
-        }
-
-        if (!search.isEmpty()) {
-            sql.append(" AND (LOWER(L.listing_name) LIKE ? OR LOWER(L.description) LIKE ? OR LOWER(L.address) LIKE ?)");
-            String q = "%" + search.toLowerCase() + "%";
-            params.add(q);
-            params.add(q);
-            params.add(q);
+        List<Map<String, Object>> rows;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (listingIndex.isReady()) {
+            ListingIndex.Page page;
+            try {
+                page = listingIndex.filterAndSort(categories, status, search, sort, uid, latitude, longitude, radiusKm, limit, cursor, explain);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            if (page.nextCursor() != null) {
+                response.header(PageCursor.HEADER, page.nextCursor());
+            }
+            rows = page.rows();
+        } else {
+            // The SQL fallback only serves first pages; cursors are resolved against the index
+            if (cursor != null && !cursor.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Listing index is still loading");
+            }
+            rows = filterAndSortFromDb(categories, status, search, sort, uid, latitude, longitude, radiusKm, limit);
+            if (explain) {
+                for (Map<String, Object> row : rows) {
+                    Object deadlineSeconds = row.get("deadline_seconds");
+                    row.put("match_explain", scorer.explain(
+                        ((Number) row.get("category_matches")).longValue(),
+                        ((Number) row.get("price")).doubleValue(),
+                        ((Number) row.get("duration")).intValue(),
+                        deadlineSeconds == null ? null : ((Number) deadlineSeconds).longValue(),
+                        ((Number) row.get("distance")).doubleValue()));
+                }
+            }
         }
 
-        sql.append(" GROUP BY L.listid");
-
-        if (categories != null && !categories.isEmpty()) {
-            sql.append(" HAVING COUNT(DISTINCT T.category_name) = ?");
-            params.add(categories.size());
+        // Embed poster, assignees and categories so cards don't fetch them one by one
+        if (hydrate && !rows.isEmpty()) {
+            Map<Integer, Map<String, Object>> details = hydrate(rows.stream().map(r -> ((Number) r.get("listid")).intValue()).toList());
+            for (Map<String, Object> row : rows) {
+                row.putAll(details.get(((Number) row.get("listid")).intValue()));
+            }
         }
+        return response.body(rows);
+    }
 
-        //add sorting
-        switch (sort.toLowerCase()) {
-            case "distance" -> sql.append(" ORDER BY status_rank ASC, distance ASC");
-            case "price" -> sql.append(" ORDER BY status_rank ASC, L.price DESC");
-            case "deadline" -> sql.append(" ORDER BY status_rank ASC, L.deadline ASC");
-            case "category" -> sql.append(" ORDER BY status_rank ASC, category_matches DESC");
-            case "best-match" -> sql.append(" ORDER BY status_rank ASC, match_score DESC");
-            default -> sql.append(" ORDER BY status_rank ASC"); //default status order
+    // Original SQL version, used until the listing index has been built
+    private List<Map<String, Object>> filterAndSortFromDb(List<String> categories, String status, String search,
+                                                          String sort, int uid, double latitude, double longitude,
+                                                          Double radiusKm, Integer limit) {
+        ListingFilterQuery query = ListingFilterQuery.build(categories, status, search, sort, uid, latitude, longitude,
+                                                            radiusKm, limit, scorer.weights());
+        try (QueryScope scope = QueryScope.named(query.name())) {
+            return jdbc.queryForList(query.sql(), query.params());
         }
-
-        return jdbc.queryForList(sql.toString(), params.toArray());
     }
 
     // get specific listing by id
     @GetMapping("/listings/{listid}")
-    public Map<String, Object> getSingleListing(@PathVariable int listid) {
-        String sql = "SELECT * FROM Listings WHERE listid = ?";
-        return jdbc.queryForMap(sql, listid);
+    public ListingRow getSingleListing(@PathVariable int listid, @RequestParam(required = false) String fields) {
+        Set<ListingRow.Field> selected = selectFields(() -> ListingRow.parseFields(fields, ListingRow.ALL));
+        String sql = ListingRow.select(selected) + " WHERE listid = ?";
+        return jdbc.queryForObject(sql, ListingRow.mapper(selected), listid);
     }
 
     // Get review for listing
     @GetMapping("/listings/{listingId}/reviews")
-    public List<Map<String, Object>> ListReviewsByListing(@PathVariable("listingId") int listingId) {
-        String sql = "SELECT * FROM Reviews WHERE listid = ?";
-        return jdbc.queryForList(sql, listingId);
+    public List<ReviewRow> ListReviewsByListing(@PathVariable("listingId") int listingId,
+                                                @RequestParam(required = false) String fields) {
+        Set<ReviewRow.Field> selected = selectFields(() -> ReviewRow.parseFields(fields, ReviewRow.ALL));
+        String sql = ReviewRow.select(selected) + " WHERE listid = ?";
+        return jdbc.query(sql, ReviewRow.mapper(selected), listingId);
     }
 
     // Get name from UID
     @CrossOrigin(origins = "http://localhost:3000")
     @GetMapping("/users/{uid}/name")
     public String getUserName(@PathVariable("uid") int uid) {
-        String sql = "SELECT name FROM Users WHERE uid = ?";
-        return jdbc.queryForObject(sql, String.class, uid);
+        return lookups.userName(uid);
+    }
+
+    // Earnings credited between two dates, both inclusive (yyyy-MM-dd)
+    @GetMapping("/users/{uid}/earnings")
+    public Map<String, Object> getEarnings(
+        @PathVariable("uid") int uid,
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        return earnings.earningsBetween(uid, from, to);
     }
 
+    // ?scale=N for about 50 * N users; the same seed regenerates the same data
     @GetMapping("/db/seed")
-    public Boolean seedDatabase() {
-        Seed seed = new Seed(this.jdbc); 
+    public Boolean seedDatabase(@RequestParam(defaultValue = "1") double scale,
+                                @RequestParam(required = false) Long seed) {
+        if (!(scale > 0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "scale must be positive");
+        }
+        Seed seeder = new Seed(this.jdbc, scale, seed != null ? seed : System.nanoTime());
         try {
-            seed.populate();
+            seeder.populate();
+            lookups.invalidateAll();
+            listingIndex.rebuild();
+            graph.rebuild();
+            signupFilter.rebuild();
         } catch (Exception e) {
             System.err.println(e);
             return false;
@@ -189,9 +316,13 @@ public class M1Controller {
             }
 
             jdbc.batchUpdate(sql, batchParams);
+            listingIndex.refreshInterests(uid);
         } catch (Exception e) {
             System.err.println(e);
             return false;
+        } finally {
+            // Part of the batch may have gone in even on failure
+            lookups.invalidatePreferences(uid);
         }
         return true;
     }
@@ -201,15 +332,7 @@ public class M1Controller {
     public ResponseEntity<Map<String, Object>> getPreferences(@PathVariable int uid) {
         Map<String, Object> response = new HashMap<>();
         try {
-            String sql = """
-                SELECT c.category_name
-                FROM InterestedIn i
-                NATURAL JOIN TaskCategories c
-                WHERE i.uid = ?
-            """;
-            List<Integer> preferences = jdbc.queryForList(sql, Integer.class, uid);
-
-            response.put("preferences", preferences);
+            response.put("preferences", lookups.preferences(uid));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             response.put("error", "An error occurred during registration. Please try again.");
@@ -217,51 +340,171 @@ public class M1Controller {
         }
     }
 
-    // Create user's account
+    // Hit/miss counts for the lookup caches
+    @GetMapping("/cache/stats")
+    public Map<String, Map<String, Object>> getCacheStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>(lookups.stats());
+        stats.put("signup_filter", signupFilter.stats());
+        return stats;
+    }
+
+    // Request and query timings, pool gauges and counters in Prometheus' text format. Only
+    // answered on the loopback interface.
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics(HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Metrics are only served locally");
+        }
+        return metrics.scrape();
+    }
+
+    // Recent statements over the slow query threshold, grouped by SQL shape with their
+    // EXPLAIN findings (full_scans lists the tables read with access_type ALL). Loopback only.
+    @GetMapping("/admin/slow-queries")
+    public Map<String, Object> getSlowQueries(HttpServletRequest request, @RequestParam(defaultValue = "50") int limit) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Slow queries are only served locally");
+        }
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        return slowQueries.report(limit);
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // The remote address is an IP literal, so this doesn't do a DNS lookup
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    // Compact user-listing graph: the nodes within `hops` of a uid or listid (or the whole
+    // graph when neither is given), capped at `limit` nodes. Edges are flat index pairs
+    // into the users/listings arrays.
+    @GetMapping("/graph")
+    public Map<String, Object> getGraph(@RequestParam(required = false) Integer uid,
+                                        @RequestParam(required = false) Integer listid,
+                                        @RequestParam(defaultValue = "2") int hops,
+                                        @RequestParam(defaultValue = "5000") int limit) {
+        if (!graph.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Graph is still loading");
+        }
+        if (hops < 0 || hops > MAX_GRAPH_HOPS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "hops must be between 0 and " + MAX_GRAPH_HOPS);
+        }
+        if (limit < 1 || limit > MAX_GRAPH_NODES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_GRAPH_NODES);
+        }
+        return graph.neighborhood(uid, listid, hops, limit);
+    }
+
+    // Recompute trust scores, components and clusters and publish them to UserTrust
+    @PostMapping("/analytics/trust/run")
+    public Map<String, Object> runTrustAnalytics() {
+        Map<String, Object> summary = analytics.run();
+        if (summary == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Trust analytics are already running");
+        }
+        return summary;
+    }
+
+    // Most trusted users from the last run
+    @GetMapping("/analytics/trust")
+    public Map<String, Object> getTrustScores(@RequestParam(defaultValue = "50") int limit) {
+        if (limit < 1 || limit > MAX_TRUST_ROWS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_TRUST_ROWS);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("last_run", analytics.lastRun());
+        response.put("users", jdbc.queryForList("""
+            SELECT t.uid, u.name, t.trust_score, t.component_id, t.cluster_id, t.computed_at
+            FROM UserTrust t
+            JOIN Users u ON u.uid = t.uid
+            ORDER BY t.trust_score DESC
+            LIMIT ?
+            """, limit));
+        return response;
+    }
+
+    @GetMapping("/analytics/trust/{uid}")
+    public ResponseEntity<Map<String, Object>> getUserTrust(@PathVariable int uid) {
+        List<Map<String, Object>> rows = jdbc.queryForList("""
+            SELECT t.*,
+                   (SELECT COUNT(*) FROM UserTrust c WHERE c.component_id = t.component_id) AS component_size,
+                   (SELECT COUNT(*) FROM UserTrust c WHERE c.cluster_id = t.cluster_id) AS cluster_size
+            FROM UserTrust t
+            WHERE t.uid = ?
+            """, uid);
+        if (rows.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No trust score for this user yet"));
+        }
+        return ResponseEntity.ok(rows.get(0));
+    }
+
+    // Top open listings for a user, kept up to date as listings and preferences change
+    @GetMapping("/feed/{uid}")
+    public ResponseEntity<List<Map<String, Object>>> getFeed(@PathVariable int uid) {
+        if (!listingIndex.isReady()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Feeds are still loading");
+        }
+        // Feeds are built on first read, so don't build them for uids that aren't users
+        try {
+            lookups.userName(uid);
+        } catch (EmptyResultDataAccessException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+        return ResponseEntity.ok(feedService.feed(uid));
+    }
+
+    // Create user's account. The password is hashed on PasswordHasher's pool and the
+    // insert runs once it's done, so the request thread isn't held for the hash.
     @CrossOrigin(origins = "http://localhost:3000")
     @PostMapping("/signup")
-    public ResponseEntity<Map<String, Object>> signup(@RequestBody Map<String, String> userData) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> signup(@RequestBody Map<String, String> userData) {
         Map<String, Object> response = new HashMap<>();
 
         try {
             String name = userData.get("name");
             String email = userData.get("email");
             String password = userData.get("password");
-            String hashedPassword = Hasher.hashPassword(password);
             String phoneNumber = userData.get("phone_number");
 
             // Validate missing email, name, etc.
             if (name == null || name.trim().isEmpty()) {
                 response.put("error", "Name is required");
-                return ResponseEntity.badRequest().body(response);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
             }
 
-            if ((email == null || email.isEmpty()) && (phoneNumber == null || phoneNumber.isEmpty())) {
+            // Compared normalized, since that's how phone login finds the account. A number
+            // that's nothing but punctuation counts as none, so it's stored as NULL rather
+            // than colliding with every other "" on idx_users_phone_normalized.
+            String normalized = phoneNumber != null ? ContactInfo.normalizePhoneNumber(phoneNumber.trim()) : null;
+            String normalizedPhone = normalized != null && !normalized.isEmpty() ? normalized : null;
+
+            if ((email == null || email.isEmpty()) && normalizedPhone == null) {
                 response.put("error", "Either email or phone number is required");
-                return ResponseEntity.badRequest().body(response);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
             }
 
             if (password == null || password.trim().isEmpty()) {
                 response.put("error", "Password is required");
-                return ResponseEntity.badRequest().body(response);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
             }
 
-            // Check duplicates
+            // Check duplicates (mostly answered by the signup filter without a query)
             if (email != null && !email.isEmpty()) {
-                String checkEmailSql = "SELECT COUNT(*) FROM Users WHERE email = ?";
-                int emailCount = jdbc.queryForObject(checkEmailSql, Integer.class, email);
-                if (emailCount > 0) {
+                if (signupFilter.isEmailTaken(email)) {
                     response.put("error", "Email is already registered");
-                    return ResponseEntity.badRequest().body(response);
+                    return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
                 }
             }
 
-            if (phoneNumber != null && !phoneNumber.isEmpty()) {
-                String checkPhoneSql = "SELECT COUNT(*) FROM Users WHERE phone_number = ?";
-                int phoneCount = jdbc.queryForObject(checkPhoneSql, Integer.class, phoneNumber);
-                if (phoneCount > 0) {
+            if (normalizedPhone != null) {
+                if (signupFilter.isPhoneTaken(normalizedPhone)) {
                     response.put("error", "Phone number is already registered");
-                    return ResponseEntity.badRequest().body(response);
+                    return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
                 }
             }
 
@@ -270,56 +513,65 @@ public class M1Controller {
             int catNumber = (hash % 7) + 1; // Ensure the result is between 1 and 7
             String profilePicture = "/cat" + catNumber + ".jpg";
 
-            String sql = "INSERT INTO Users (name, email, phone_number, profile_picture, password) VALUES (?, ?, ?, ?, ?)";
-
-            // Run the query and grab the UID, storing it in keyHolder
-            KeyHolder keyHolder = new GeneratedKeyHolder();
-
-            jdbc.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                ps.setString(1, name.trim());
-                ps.setString(2, email.trim());
-                ps.setString(3, phoneNumber != null && !phoneNumber.trim().isEmpty() ? phoneNumber.trim() : null);
-                ps.setString(4, profilePicture); 
-                ps.setString(5, hashedPassword);
-                return ps;
-            }, keyHolder);
+            String sql = "INSERT INTO Users (name, email, phone_number, phone_normalized, profile_picture, password) VALUES (?, ?, ?, ?, ?, ?)";
+
+            return passwords.hash(password).thenApplyAsync(hashedPassword -> {
+                // Run the query and grab the UID, storing it in keyHolder
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+
+                // On the request executor, so outside the request's QueryScope
+                try (QueryScope scope = QueryScope.named("signup.insert")) {
+                    jdbc.update(connection -> {
+                        PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+                        ps.setString(1, name.trim());
+                        ps.setString(2, email != null && !email.isBlank() ? email.trim() : null);
+                        ps.setString(3, normalizedPhone != null ? phoneNumber.trim() : null);
+                        ps.setString(4, normalizedPhone);
+                        ps.setString(5, profilePicture);
+                        ps.setString(6, hashedPassword);
+                        return ps;
+                    }, keyHolder);
+                } catch (DuplicateKeyException e) {
+                    // Registered since the check above (or a duplicate the filter can't see)
+                    boolean phoneTaken = e.getMessage() != null && e.getMessage().contains("idx_users_phone_normalized");
+                    response.put("error", phoneTaken ? "Phone number is already registered" : "Email is already registered");
+                    return ResponseEntity.badRequest().body(response);
+                }
 
-            int newUid = keyHolder.getKey().intValue();
+                int newUid = keyHolder.getKey().intValue();
+                signupFilter.add(email, normalizedPhone);
+                lookups.invalidateUser(newUid);
+                graph.addUser(newUid);
 
-            response.put("uid", newUid);
-            response.put("name", name);
-            response.put("email", email);
-            response.put("phone_number", phoneNumber);
-            response.put("profile_picture", profilePicture); 
-            response.put("total_earnings", 0);
-            return ResponseEntity.ok(response);
+                response.put("uid", newUid);
+                response.put("name", name);
+                response.put("email", email);
+                response.put("phone_number", phoneNumber);
+                response.put("profile_picture", profilePicture);
+                response.put("total_earnings", 0);
+                return ResponseEntity.ok(response);
+            }, requestExecutor).exceptionally(e -> signupFailed(e, response));
 
         } catch (Exception e) {
-            logger.error("Error during signup: {}", e.getMessage(), e);
-            
-            response.put("error", "An error occurred during registration. Please try again.");
-            return ResponseEntity.badRequest().body(response);
+            return CompletableFuture.completedFuture(signupFailed(e, response));
         }
     }
 
-    // We want users to be able to sign in with phone number as well
-    // so check if it's an email before we query
-    private boolean isEmail(String input) {
-        return input != null && input.contains("@") && input.contains(".");
-    }
+    private static ResponseEntity<Map<String, Object>> signupFailed(Throwable e, Map<String, Object> response) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof ResponseStatusException status) throw status;
+        logger.error("Error during signup: {}", cause.getMessage(), cause);
 
-    private String normalizePhoneNumber(String phoneNumber) {
-        if (phoneNumber == null) return null;
-        // Removes spaces, hyphens, parentheses
-        return phoneNumber.replaceAll("[\\s\\-\\(\\)\\+]", "");
+        response.put("error", "An error occurred during registration. Please try again.");
+        return ResponseEntity.badRequest().body(response);
     }
 
-    // Log user in
+    // Log user in. The password check runs on PasswordHasher's pool; accounts still on the
+    // old SHA-256 hash (or fewer iterations than we calibrated) are rehashed after they log in.
     @CrossOrigin(origins = "http://localhost:3000")
     @PostMapping("/login")
-    public ResponseEntity<Map<String, Object>> login(@RequestBody Map<String, String> loginData) {
-        logger.info("Login endpoint called with data: {}", loginData);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> login(@RequestBody Map<String, String> loginData) {
+        logger.info("Login endpoint called for: {}", loginData.getOrDefault("email", loginData.get("phone_number")));
         
         Map<String, Object> response = new HashMap<>();
 
@@ -327,7 +579,6 @@ public class M1Controller {
             String email = loginData.get("email");
             String phoneNumber = loginData.get("phone_number");
             String password = loginData.get("password");
-            String hashedPassword = Hasher.hashPassword(password);
 
             // clean values to trim whitespace
             if (email != null) {
@@ -335,58 +586,94 @@ public class M1Controller {
             }
             if (phoneNumber != null) {
                 phoneNumber = phoneNumber.trim();
-                phoneNumber = normalizePhoneNumber(phoneNumber);
+                phoneNumber = ContactInfo.normalizePhoneNumber(phoneNumber);
             }
 
-            logger.info("Parsed login data - Email: {}, Phone Number: {}, Hashed Password: {}", email, phoneNumber, hashedPassword);
+            logger.info("Parsed login data - Email: {}, Phone Number: {}", email, phoneNumber);
 
             // Allow users to log in either with email or with phone number
             if ((email == null || email.isEmpty()) && (phoneNumber == null || phoneNumber.isEmpty())) {
                 response.put("error", "Email or phone number is required");
-                return ResponseEntity.badRequest().body(response);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
             }
 
             if (password == null || password.trim().isEmpty()) {
                 response.put("error", "Password is required");
-                return ResponseEntity.badRequest().body(response);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
             }
 
             String sql;
             Object parameter; // Either email or phone_number
 
             // Check whether user gave us an email or a phone number
-            if (email != null && !email.trim().isEmpty() && isEmail(email)) {
+            // Users can sign in with a phone number too, so check it's an email before we query
+            if (email != null && !email.trim().isEmpty() && ContactInfo.isEmail(email)) {
                 sql = "SELECT uid, password FROM Users WHERE email = ?";
                 parameter = email.trim();
             } else {
-                sql = "SELECT uid, password FROM Users WHERE REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(phone_number, ' ', ''), '-', ''), '(', ''), ')', ''), '+', '') = ?";
+                // Point lookup on idx_users_phone_normalized
+                sql = "SELECT uid, password FROM Users WHERE phone_normalized = ?";
                 parameter = phoneNumber.trim();
             }
 
-            Map<String, Object> credentials = jdbc.queryForMap(sql, parameter);
-            
-            // check for password
-            if (!hashedPassword.equals(credentials.get("password"))) {
-                response.put("error", "Incorrect credentials");
-                return ResponseEntity.badRequest().body(response);
+            Map<String, Object> credentials;
+            try (QueryScope scope = QueryScope.named("login.credentials")) {
+                credentials = jdbc.queryForMap(sql, parameter);
             }
-
-            // call getUserProfile to populate their profile
             int uid = ((Number) credentials.get("uid")).intValue();
-            ResponseEntity<Map<String, Object>> profileResponse = getUserProfile(uid);
-            
-            if (profileResponse.getStatusCode().is2xxSuccessful()) {
-                return ResponseEntity.ok(profileResponse.getBody());
-            } else {
-                return profileResponse;
-            }
+            String storedPassword = (String) credentials.get("password");
+
+            return passwords.verify(password, storedPassword).thenApplyAsync(verification -> {
+                // check for password
+                if (!verification.matches()) {
+                    response.put("error", "Incorrect credentials");
+                    return ResponseEntity.badRequest().body(response);
+                }
+                if (verification.needsRehash()) {
+                    rehashPassword(uid, password, storedPassword);
+                }
+
+                // call getUserProfile to populate their profile
+                ResponseEntity<Map<String, Object>> profileResponse = getUserProfile(uid);
+
+                if (profileResponse.getStatusCode().is2xxSuccessful()) {
+                    return ResponseEntity.ok(profileResponse.getBody());
+                } else {
+                    return profileResponse;
+                }
+            }, requestExecutor).exceptionally(e -> loginFailed(e, response));
+
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(loginFailed(e, response));
+        }
+    }
 
-    } catch (Exception e) {
-        logger.error("Login error: {}", e.getMessage(), e);
+    private static ResponseEntity<Map<String, Object>> loginFailed(Throwable e, Map<String, Object> response) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof ResponseStatusException status) throw status;
+        logger.error("Login error: {}", cause.getMessage(), cause);
         response.put("error", "User not found");
         return ResponseEntity.badRequest().body(response);
     }
-}
+
+    // In the background, after the login response. The UPDATE only applies if the stored
+    // hash is still the one we checked, so a password change in the meantime wins.
+    private void rehashPassword(int uid, String password, String previousHash) {
+        passwords.hash(password)
+            .thenAcceptAsync(hash -> {
+                try (QueryScope scope = QueryScope.named("login.rehash")) {
+                    jdbc.update("UPDATE Users SET password = ? WHERE uid = ? AND password = ?", hash, uid, previousHash);
+                }
+            }, requestExecutor)
+            .exceptionally(e -> {
+                logger.warn("Could not rehash the password of user {}: {}", uid, unwrap(e).getMessage());
+                return null;
+            });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
 
     // Create new listing
     @CrossOrigin(origins = "http://localhost:3000")
@@ -495,6 +782,9 @@ public class M1Controller {
             for (Integer categoryId : categoryIds) {
                 jdbc.update(belongsToSql, newListingId, categoryId);
             }
+            lookups.invalidateListing(newListingId);
+            listingIndex.refresh(newListingId);
+            graph.addPosting(newListingId, posterUid);
 
             response.put("listid", newListingId);
             response.put("message", "Listing created successfully");
@@ -511,106 +801,36 @@ public class M1Controller {
 
     //assign user to listing
     @PostMapping("/listings/{listid}/assign/{uid}")
-    @Transactional(isolation = Isolation.SERIALIZABLE)
     public ResponseEntity<String> assignTask(@PathVariable int listid, @PathVariable int uid) {
         try {
-            // Lock the listing row with FOR UPDATE, prevents concurrent assignment
-            String checkListingSql = "SELECT status, capacity FROM Listings WHERE listid = ? FOR UPDATE";
-            Map<String, Object> listing;
-            
-            try {
-                listing = jdbc.queryForMap(checkListingSql, listid);
-            } catch (Exception e) {
-                return ResponseEntity.badRequest().body("Listing not found.");
+            AssignmentService.Result result = assignments.assign(listid, uid);
+            if (!result.succeeded()) {
+                return ResponseEntity.badRequest().body(result.message());
             }
-            
-            //check if listing is open
-            String status = (String) listing.get("status");
-            if (!"open".equalsIgnoreCase(status)) {
-                return ResponseEntity.badRequest().body("Listing is not open.");
-            }
-            
-            //check if user is the poster (also with lock)
-            String posterCheckSql = "SELECT COUNT(*) FROM Posts WHERE listid = ? AND uid = ?";
-            int isPoster = jdbc.queryForObject(posterCheckSql, Integer.class, listid, uid);
-            if (isPoster > 0) {
-                return ResponseEntity.badRequest().body("You cannot take your own task.");
-            }
-            
-            // checks if user already assigned
-            String alreadyAssignedSql = "SELECT COUNT(*) FROM AssignedTo WHERE listid = ? AND uid = ?";
-            int isAssigned = jdbc.queryForObject(alreadyAssignedSql, Integer.class, listid, uid);
-            if (isAssigned > 0) {
-                return ResponseEntity.badRequest().body("You are already assigned to this task.");
-            }
-            
-            // Check if listing is full, for update prevents race conditions
-            String countSql = "SELECT COUNT(*) FROM AssignedTo WHERE listid = ? FOR UPDATE";
-            int assigned = jdbc.queryForObject(countSql, Integer.class, listid);
-            
-            int capacity = ((Number) listing.get("capacity")).intValue();
-            
-            if (assigned >= capacity) {
-                return ResponseEntity.badRequest().body("Task already full.");
-            }
-
-            //insert into AssignedTo 
-            String insertSql = "INSERT INTO AssignedTo(listid, uid) VALUES (?, ?)";
-            jdbc.update(insertSql, listid, uid);
-
-            //update Listings.status if needed
-            return ResponseEntity.ok("Successfully assigned task.");
+            // The assignment may have filled the listing and flipped it to taken
+            listingIndex.setSeats(listid, result.status(), result.assignedCount(), result.version());
+            graph.addAssignment(listid, uid);
+            return ResponseEntity.ok(result.message());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Database error: " + e.getMessage());
         }
     }
 
-    //unassign user from listing
     @PostMapping("/listings/{listid}/unassign/{uid}")
-    @Transactional(isolation = Isolation.SERIALIZABLE)
     public ResponseEntity<String> unassignTask(@PathVariable int listid, @PathVariable int uid) {
         try {
-            // Lock the listing row with FOR UPDATE, prevents concurrent changes
-            String checkListingSql = "SELECT status FROM Listings WHERE listid = ? FOR UPDATE";
-            Map<String, Object> listing;
-            
-            try {
-                listing = jdbc.queryForMap(checkListingSql, listid);
-            } catch (Exception e) {
-                return ResponseEntity.badRequest().body("Listing not found.");
-            }
-            
-            // Check if listing is in a state that allows unassignment
-            String status = (String) listing.get("status");
-            if ("completed".equalsIgnoreCase(status) || "cancelled".equalsIgnoreCase(status)) {
-                return ResponseEntity.badRequest().body("Cannot unassign from a completed or cancelled listing.");
-            }
-            
-            // Check if the user is actually assigned to this listing
-            String checkAssignedSql = "SELECT COUNT(*) FROM AssignedTo WHERE listid = ? AND uid = ?";
-            int isAssigned = jdbc.queryForObject(checkAssignedSql, Integer.class, listid, uid);
-            
-            if (isAssigned == 0) {
-                return ResponseEntity.badRequest().body("You are not assigned to this task.");
-            }
-            
-            // Remove the assignment
-            String deleteSql = "DELETE FROM AssignedTo WHERE listid = ? AND uid = ?";
-            jdbc.update(deleteSql, listid, uid);
-            
-            // Update the listing status back to open if currently taken
-            if ("taken".equalsIgnoreCase(status)) {
-                String updateStatusSql = "UPDATE Listings SET status = 'open' WHERE listid = ?";
-                jdbc.update(updateStatusSql, listid);
+            AssignmentService.Result result = assignments.unassign(listid, uid);
+            if (!result.succeeded()) {
+                return ResponseEntity.badRequest().body(result.message());
             }
-            
-            return ResponseEntity.ok("Successfully unassigned from task.");
+            listingIndex.setSeats(listid, result.status(), result.assignedCount(), result.version());
+            graph.removeAssignment(listid, uid);
+            return ResponseEntity.ok(result.message());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Database error: " + e.getMessage());
         }
     }
 
-    //get assigned users for each listing
     @GetMapping("/listings/{listid}/assigned-users")
     public List<Map<String, Object>> getAssignedUsers(@PathVariable int listid) {
         String sql = "SELECT U.uid, U.name, U.profile_picture FROM AssignedTo A JOIN Users U ON A.uid = U.uid WHERE A.listid = ?";
@@ -623,60 +843,16 @@ public class M1Controller {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            // Total earnings
-            String userSql = """
-                SELECT * FROM Users u LEFT OUTER JOIN (
-                    SELECT SUM(price) total_earnings, uid
-                    FROM Users NATURAL JOIN AssignedTo NATURAL JOIN Listings
-                    WHERE status = 'completed'
-                    GROUP BY uid
-                ) earnings ON u.uid = earnings.uid
-                WHERE u.uid = ?
-            """;
-            
-            Map<String, Object> user = jdbc.queryForMap(userSql, uid);
+            // User, reviews, created/assigned listings and preferences are fetched concurrently
+            Map<String, Object> user = profiles.load(uid);
+            if (user == null) {
+                response.put("error", "User not found");
+                return ResponseEntity.badRequest().body(response);
+            }
             
             // We don't need password (and it's bad security to include it D:)
             user.remove("password");
-            
-            String reviewSql = """
-                SELECT r.*, u.name AS reviewer_name, listing_name FROM Reviews r 
-                JOIN Users u ON r.reviewer_uid = u.uid 
-                JOIN Listings l ON r.listid = l.listid
-                WHERE reviewee_uid = ?
-            """;
-            List<Map<String, Object>> reviews = jdbc.queryForList(reviewSql, uid);
-            user.put("reviews", reviews);
-            
-            // Get listings that user created
-            String createdListingsSql = """
-                SELECT l.* 
-                FROM Listings l 
-                JOIN Posts p ON l.listid = p.listid 
-                WHERE p.uid = ?
-            """;
-            List<Map<String, Object>> createdListings = jdbc.queryForList(createdListingsSql, uid);
-            user.put("created_listings", createdListings);
-            
-            // Get listings assigned to this user
-            String assignedListingsSql = """
-                SELECT l.* 
-                FROM Listings l 
-                JOIN AssignedTo a ON l.listid = a.listid 
-                WHERE a.uid = ?
-            """;
-            List<Map<String, Object>> assignedListings = jdbc.queryForList(assignedListingsSql, uid);
-            user.put("assigned_listings", assignedListings);
-
-             String preferences_sql = """
-                SELECT c.category_name
-                FROM InterestedIn i
-                NATURAL JOIN TaskCategories c
-                WHERE i.uid = ?
-            """;
-
-            List<String> categoryNames = jdbc.queryForList(preferences_sql, String.class, uid);
-            user.put("preferences", categoryNames);
+            withRatingHistogram(user);
             
             return ResponseEntity.ok(user);
             
@@ -716,9 +892,11 @@ public class M1Controller {
                 return ResponseEntity.badRequest().body("This task must be assigned to someone before marking as complete");
             }
             
-            // Update the status to completed
-            String updateSql = "UPDATE Listings SET status = 'completed' WHERE listid = ?";
-            jdbc.update(updateSql, listid);
+            // Update the status to completed and credit whoever took it
+            if (!earnings.completeListing(listid)) {
+                return ResponseEntity.badRequest().body("This task must be assigned to someone before marking as complete");
+            }
+            listingIndex.setStatus(listid, "completed");
             
             return ResponseEntity.ok("Task marked as complete");
         } catch (Exception e) {
@@ -730,51 +908,133 @@ public class M1Controller {
     // Get poster info for a listing
     @GetMapping("/listings/{listid}/poster")
     public Map<String, Object> getListingPoster(@PathVariable int listid) {
-        String sql = "SELECT U.uid, U.name, U.profile_picture FROM Posts P JOIN Users U ON P.uid = U.uid WHERE P.listid = ?";
-        return jdbc.queryForMap(sql, listid);
+        return lookups.listingPoster(listid);
+    }
+
+    // Poster, assigned users and category names for a batch of listings (keyed by listid),
+    // so a page of cards costs three queries instead of three per card
+    @PostMapping("/listings/hydrate")
+    public ResponseEntity<Map<Integer, Map<String, Object>>> hydrateListings(@RequestBody List<Integer> listids) {
+        if (listids.size() > MAX_HYDRATE_LISTINGS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_HYDRATE_LISTINGS + " listings per request");
+        }
+        return ResponseEntity.ok(hydrate(listids));
+    }
+
+    private Map<Integer, Map<String, Object>> hydrate(List<Integer> listids) {
+        Map<Integer, Map<String, Object>> details = new LinkedHashMap<>();
+        for (Integer listid : listids) {
+            if (listid == null || details.containsKey(listid)) continue;
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("poster", null);
+            entry.put("assigned_users", new ArrayList<Map<String, Object>>());
+            entry.put("categories", new ArrayList<String>());
+            details.put(listid, entry);
+        }
+        if (details.isEmpty()) return details;
+
+        String in = "?,".repeat(details.size() - 1) + "?";
+        Object[] ids = details.keySet().toArray();
+
+        String posterSql = "SELECT P.listid, U.uid, U.name, U.profile_picture FROM Posts P JOIN Users U ON P.uid = U.uid WHERE P.listid IN (" + in + ")";
+        jdbc.query(posterSql, rs -> {
+            details.get(rs.getInt("listid")).put("poster", userSummary(rs));
+        }, ids);
+
+        String assignedSql = "SELECT A.listid, U.uid, U.name, U.profile_picture FROM AssignedTo A JOIN Users U ON A.uid = U.uid WHERE A.listid IN (" + in + ")";
+        jdbc.query(assignedSql, rs -> {
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> assigned = (List<Map<String, Object>>) details.get(rs.getInt("listid")).get("assigned_users");
+            assigned.add(userSummary(rs));
+        }, ids);
+
+        String categoriesSql = "SELECT B.listid, T.category_name FROM BelongsTo B JOIN TaskCategories T ON B.category_id = T.category_id WHERE B.listid IN (" + in + ")";
+        jdbc.query(categoriesSql, rs -> {
+            @SuppressWarnings("unchecked")
+            List<String> names = (List<String>) details.get(rs.getInt("listid")).get("categories");
+            names.add(rs.getString("category_name"));
+        }, ids);
+
+        return details;
+    }
+
+    // Same shape as /listings/{listid}/poster and /assigned-users rows
+    private static Map<String, Object> userSummary(java.sql.ResultSet rs) throws java.sql.SQLException {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("uid", rs.getInt("uid"));
+        user.put("name", rs.getString("name"));
+        user.put("profile_picture", rs.getString("profile_picture"));
+        return user;
     }
 
     @GetMapping("/listings/{listid}/categories")
     public List<String> getListingCategories(@PathVariable int listid) {
-        String sql = """
-            SELECT T.category_name
-            FROM BelongsTo B
-            JOIN TaskCategories T ON B.category_id = T.category_id
-            WHERE B.listid = ?
-        """;
-        return jdbc.queryForList(sql, String.class, listid);
+        return lookups.listingCategories(listid);
     }
 
     // Get all posting edges (just uid and listid)
     @GetMapping("/postings")
-    public List<Map<String, Object>> getAllPostings() {
-        String sql = "SELECT uid, listid FROM Posts";
-        return jdbc.queryForList(sql);
+    public List<Edge> getAllPostings() {
+        return jdbc.query(POSTINGS_SQL, Edge.MAPPER);
+    }
+
+    // ?format=ndjson variants stream one JSON object per line without loading the table into memory
+    @GetMapping(value = "/postings", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllPostings() {
+        return ndjson.stream("postings", POSTINGS_SQL, Edge.MAPPER);
     }
 
     // Get all assignment edges (just uid and listid)
     @GetMapping("/assignments")
-    public List<Map<String, Object>> getAllAssignments() {
-        String sql = "SELECT uid, listid FROM AssignedTo";
-        return jdbc.queryForList(sql);
+    public List<Edge> getAllAssignments() {
+        return jdbc.query(ASSIGNMENTS_SQL, Edge.MAPPER);
+    }
+
+    @GetMapping(value = "/assignments", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllAssignments() {
+        return ndjson.stream("assignments", ASSIGNMENTS_SQL, Edge.MAPPER);
     }
 
     @GetMapping("/info/listings")
-    public List<Map<String, Object>> getAllListings() {
-        String sql = """
-            SELECT listid, listing_name, status, price, address
-            FROM Listings
-        """;
-        return jdbc.queryForList(sql);
+    public ResponseEntity<List<ListingRow>> getAllListings(
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) String fields
+    ) {
+        Set<ListingRow.Field> selected = selectFields(() -> ListingRow.parseFields(fields, ListingRow.SUMMARY));
+        return pageById(ListingRow.select(selected), "listid", limit, cursor, ListingRow.mapper(selected), ListingRow::listid);
+    }
+
+    @GetMapping(value = "/info/listings", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllListings(@RequestParam(required = false) String fields) {
+        Set<ListingRow.Field> selected = selectFields(() -> ListingRow.parseFields(fields, ListingRow.SUMMARY));
+        return ndjson.stream("listings", ListingRow.select(selected), ListingRow.mapper(selected));
     }
 
     @GetMapping("/info/users")
-    public List<Map<String, Object>> getAllUsers() {
-        String sql = """
-            SELECT uid, name, profile_picture, email, phone_number, overall_rating
-            FROM Users
-        """;
-        return jdbc.queryForList(sql);
+    public ResponseEntity<List<UserRow>> getAllUsers(
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) String fields
+    ) {
+        Set<UserRow.Field> selected = selectFields(() -> UserRow.parseFields(fields, UserRow.ALL));
+        return pageById(UserRow.select(selected), "uid", limit, cursor, UserRow.mapper(selected), UserRow::uid);
+    }
+
+    @GetMapping(value = "/info/users", params = "format=ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam(required = false) String fields) {
+        Set<UserRow.Field> selected = selectFields(() -> UserRow.parseFields(fields, UserRow.ALL));
+        return ndjson.stream("users", UserRow.select(selected), UserRow.mapper(selected));
+    }
+
+    // Folds the stars_1..stars_5 columns into a rating_histogram field keyed by star count
+    // (the profile's version of what UserRow serializes)
+    private static void withRatingHistogram(Map<String, Object> user) {
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        for (int stars = 1; stars <= 5; stars++) {
+            histogram.put(Integer.toString(stars), user.remove("stars_" + stars));
+        }
+        user.put("rating_histogram", histogram);
     }
 
     // Create a review (after a posting is completed)
@@ -854,19 +1114,7 @@ public class M1Controller {
                 
                 response.put("message", "Review submitted successfully");
             }
-            
-            // Update user's overall rating
-            String updateRatingSql = """
-                UPDATE Users
-                SET overall_rating = (
-                    SELECT AVG(rating)
-                    FROM Reviews
-                    WHERE reviewee_uid = ?
-                )
-                WHERE uid = ?
-            """;
-            jdbc.update(updateRatingSql, revieweeUid, revieweeUid);
-            
+            // The Reviews triggers keep overall_rating and the histogram up to date
             return ResponseEntity.ok(response);
             
         } catch (Exception e) {
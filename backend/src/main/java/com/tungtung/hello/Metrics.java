@@ -0,0 +1,143 @@
+package com.tungtung.hello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.stereotype.Component;
+
+// In-process metrics, served by /metrics in Prometheus' text format. Timers keep an HDR
+// histogram of microseconds and report their quantiles since startup as a summary;
+// counters are LongAdders; gauges are read when scraped. Series are created on first use
+// and labelled with key/value pairs, e.g. timer("tungtung_x_seconds", "...", "query", name).
+@Component
+public class Metrics {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private record Family(String name, Type type, String help, ConcurrentMap<String, Object> series) {}
+
+    // Recording is wait-free on the Recorder; a scrape folds what's been recorded since the
+    // last one into the running total
+    public static final class Timer {
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder nanos = new LongAdder();
+        private final Histogram total = new Histogram(3);
+        private Histogram interval;
+
+        public void record(long elapsedNanos) {
+            recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+            nanos.add(elapsedNanos);
+        }
+
+        private synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            total.add(interval);
+            return total.copy();
+        }
+    }
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) series(name, Type.SUMMARY, help, labels, Timer::new);
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) series(name, Type.COUNTER, help, labels, LongAdder::new);
+    }
+
+    // A counter kept elsewhere (a LongAdder in a stats() map, a pool's own tally)
+    public void counterFunction(String name, String help, DoubleSupplier value, String... labels) {
+        series(name, Type.COUNTER, help, labels, () -> value);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        series(name, Type.GAUGE, help, labels, () -> value);
+    }
+
+    // Text exposition format 0.0.4, families and series in name order
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        List<Family> sorted = new ArrayList<>(families.values());
+        sorted.sort((a, b) -> a.name().compareTo(b.name()));
+        for (Family family : sorted) {
+            out.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().name().toLowerCase()).append('\n');
+            List<Map.Entry<String, Object>> series = new ArrayList<>(family.series().entrySet());
+            series.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<String, Object> entry : series) {
+                String labels = entry.getKey();
+                Object value = entry.getValue();
+                if (value instanceof Timer timer) {
+                    Histogram histogram = timer.snapshot();
+                    for (double quantile : QUANTILES) {
+                        String withQuantile = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + quantile + "\"";
+                        sample(out, family.name(), withQuantile, histogram.getValueAtPercentile(quantile * 100) / 1e6);
+                    }
+                    sample(out, family.name() + "_sum", labels, timer.nanos.sum() / 1e9);
+                    sample(out, family.name() + "_count", labels, histogram.getTotalCount());
+                } else if (value instanceof LongAdder adder) {
+                    sample(out, family.name(), labels, adder.sum());
+                } else {
+                    sample(out, family.name(), labels, ((DoubleSupplier) value).getAsDouble());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private Object series(String name, Type type, String help, String[] labels, Supplier<Object> create) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, type, help, new ConcurrentHashMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type().name().toLowerCase());
+        }
+        return family.series().computeIfAbsent(labels(labels), l -> create.get());
+    }
+
+    // key="value" pairs, without the braces
+    private static String labels(String[] pairs) {
+        if (pairs.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key/value pairs");
+        }
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (i > 0) labels.append(',');
+            labels.append(pairs[i]).append("=\"");
+            String value = pairs[i + 1] == null ? "" : pairs[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                switch (ch) {
+                    case '\\' -> labels.append("\\\\");
+                    case '"' -> labels.append("\\\"");
+                    case '\n' -> labels.append("\\n");
+                    default -> labels.append(ch);
+                }
+            }
+            labels.append('"');
+        }
+        return labels.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+}
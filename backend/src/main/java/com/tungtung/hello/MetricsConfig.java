@@ -0,0 +1,42 @@
+package com.tungtung.hello;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Swaps Boot's JdbcTemplate for the instrumented one, so every service's queries are
+// timed, and times every request
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final Metrics metrics;
+
+    public MetricsConfig(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Keeps the spring.jdbc.template.* settings Boot's own JdbcTemplate would have applied
+    @Bean
+    @Primary
+    public InstrumentedJdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties, SlowQueryLog slowQueries) {
+        InstrumentedJdbcTemplate jdbc = new InstrumentedJdbcTemplate(dataSource, metrics, slowQueries);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbc.setFetchSize(template.getFetchSize());
+        jdbc.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbc.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbc;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // /error is the error page dispatch of a request that's already being timed
+        registry.addInterceptor(new EndpointMetrics(metrics)).excludePathPatterns("/error");
+    }
+}
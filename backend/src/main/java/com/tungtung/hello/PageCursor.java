@@ -0,0 +1,42 @@
+package com.tungtung.hello;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque keyset cursor: the sort mode plus the sort key and id of the last row on a page.
+// nowSeconds pins the clock used for time-dependent scores so later pages line up.
+record PageCursor(String sort, int statusRank, String key, int id, long nowSeconds) {
+
+    static final String HEADER = "X-Next-Cursor";
+
+    String encode() {
+        String raw = String.join("|", "v1", sort, Integer.toString(statusRank), key, Integer.toString(id),
+            Long.toString(nowSeconds));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageCursor decode(String cursor, String expectedSort) {
+        PageCursor decoded;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 6 || !"v1".equals(parts[0])) {
+                throw new IllegalArgumentException();
+            }
+            decoded = new PageCursor(parts[1], Integer.parseInt(parts[2]), parts[3], Integer.parseInt(parts[4]),
+                Long.parseLong(parts[5]));
+        } catch (IllegalArgumentException e) {
+            // Bad base64, wrong shape or NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!decoded.sort().equals(expectedSort)) {
+            throw new IllegalArgumentException("Cursor was issued for sort '" + decoded.sort() + "'");
+        }
+        return decoded;
+    }
+
+    // Cursor for plain "ORDER BY id" listings such as /listings and /info/users
+    static PageCursor afterId(int id) {
+        return new PageCursor("id", 0, "", id, 0);
+    }
+}
@@ -0,0 +1,166 @@
+package com.tungtung.hello;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import jakarta.annotation.PreDestroy;
+
+// Salted PBKDF2-HMAC-SHA256 password hashes, stored as "pbkdf2-sha256$iterations$salt$hash"
+// (base64, so they fit Users.password). The iteration count is calibrated at startup so one
+// hash takes about tungtung.password.target-ms on this machine. Hashing runs on its own
+// bounded pool rather than on Tomcat's threads: a burst of logins queues here, and once
+// the queue is full further ones get 503 instead of starving every other endpoint.
+@Component
+public class PasswordHasher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+
+    static final String PREFIX = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int MAX_ITERATIONS = 10_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+
+    // matches: the password is right. needsRehash: it's right but stored as legacy SHA-256
+    // or with fewer iterations than we use now, so it should be hashed again.
+    public record Verification(boolean matches, boolean needsRehash) {}
+
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadPoolExecutor executor;
+    private final int iterations;
+
+    public PasswordHasher(@Value("${tungtung.password.target-ms:100}") long targetMillis,
+                          @Value("${tungtung.password.min-iterations:100000}") int minIterations,
+                          @Value("${tungtung.password.threads:0}") int threads,
+                          @Value("${tungtung.password.queue:64}") int queue) {
+        this.iterations = calibrate(targetMillis, minIterations);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "password-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queue), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Password hashing: {} PBKDF2 iterations (target {} ms), {} threads, queue {}",
+            iterations, targetMillis, poolSize, queue);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    // A new stored hash with a fresh salt
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> {
+            byte[] salt = new byte[SALT_BYTES];
+            random.nextBytes(salt);
+            return format(iterations, salt, derive(password, salt, iterations));
+        });
+    }
+
+    public CompletableFuture<Verification> verify(String password, String stored) {
+        if (stored == null) {
+            return CompletableFuture.completedFuture(new Verification(false, false));
+        }
+        if (!stored.startsWith(PREFIX + "$")) {
+            // Legacy SHA-256 hex: too cheap to be worth a trip through the pool
+            boolean matches = matchesLegacy(password, stored);
+            return CompletableFuture.completedFuture(new Verification(matches, matches));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return CompletableFuture.completedFuture(new Verification(false, false));
+        }
+        int storedIterations;
+        byte[] salt;
+        byte[] expected;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+            salt = Base64.getDecoder().decode(parts[2]);
+            expected = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(new Verification(false, false));
+        }
+        return submit(() -> {
+            boolean matches = MessageDigest.isEqual(derive(password, salt, storedIterations), expected);
+            return new Verification(matches, matches && storedIterations < iterations);
+        });
+    }
+
+    static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static String format(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    private static boolean matchesLegacy(String password, String stored) {
+        try {
+            return MessageDigest.isEqual(Hasher.hashPassword(password).getBytes(), stored.getBytes());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(
+                new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many passwords being hashed, try again shortly"));
+        }
+    }
+
+    // Scales a timed run up to the target, taking the fastest of a few runs so JIT warmup
+    // doesn't count
+    private static int calibrate(long targetMillis, int minIterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            derive("calibration", salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perIteration = (double) best / CALIBRATION_ITERATIONS;
+        long calibrated = Math.round(TimeUnit.MILLISECONDS.toNanos(targetMillis) / perIteration);
+        return (int) Math.max(minIterations, Math.min(MAX_ITERATIONS, calibrated));
+    }
+}
@@ -0,0 +1,52 @@
+package com.tungtung.hello;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+// Hikari pool saturation: how long getConnection waits, how long connections are held,
+// timeouts, and active/idle/pending gauges. Hikari reports these through a metrics
+// tracker, which it accepts even after the pool has started. Other DataSources (tests)
+// are left alone.
+@Component
+public class PoolMetrics {
+
+    public PoolMetrics(DataSource dataSource, Metrics metrics) {
+        if (!(dataSource instanceof HikariDataSource hikari)) return;
+        hikari.setMetricsTrackerFactory((poolName, stats) -> tracker(poolName, stats, metrics));
+    }
+
+    private static IMetricsTracker tracker(String pool, PoolStats stats, Metrics metrics) {
+        metrics.gauge("tungtung_pool_active_connections", "Connections in use", stats::getActiveConnections, "pool", pool);
+        metrics.gauge("tungtung_pool_idle_connections", "Connections open but unused", stats::getIdleConnections, "pool", pool);
+        metrics.gauge("tungtung_pool_total_connections", "Connections open", stats::getTotalConnections, "pool", pool);
+        metrics.gauge("tungtung_pool_max_connections", "Pool size limit", stats::getMaxConnections, "pool", pool);
+        metrics.gauge("tungtung_pool_pending_threads", "Threads waiting for a connection", stats::getPendingThreads, "pool", pool);
+        Metrics.Timer acquire = metrics.timer("tungtung_pool_acquire_seconds", "Time to get a connection from the pool", "pool", pool);
+        Metrics.Timer usage = metrics.timer("tungtung_pool_usage_seconds", "Time a connection is held before being returned", "pool", pool);
+        LongAdder timeouts = metrics.counter("tungtung_pool_timeouts_total", "getConnection calls that timed out", "pool", pool);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package com.tungtung.hello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+// Loads /profile/{uid} (and the login response) by running its five independent
+// queries at the same time on a small bounded pool, so the profile takes about as
+// long as its slowest query. The user row is required; any other section that fails
+// or runs past its timeout comes back empty and is listed under "unavailable".
+@Component
+public class ProfileService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfileService.class);
+
+    private final JdbcTemplate jdbc;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    public ProfileService(JdbcTemplate jdbc,
+                          @Value("${tungtung.profile.threads:8}") int threads,
+                          @Value("${tungtung.profile.queue:64}") int queue,
+                          @Value("${tungtung.profile.timeout-ms:2000}") long timeoutMillis) {
+        this.jdbc = jdbc;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "profile-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // When the queue is full the request thread runs the query itself, which degrades
+        // to the old sequential behaviour instead of failing
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queue), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Returns null if the user doesn't exist
+    public Map<String, Object> load(int uid) {
+        CompletableFuture<Map<String, Object>> user = submit("profile.user", () -> jdbc.queryForMap(bounded("""
+            SELECT u.*, e.lifetime_total AS total_earnings
+            FROM Users u LEFT OUTER JOIN UserEarnings e ON u.uid = e.uid
+            WHERE u.uid = ?
+            """), uid));
+        CompletableFuture<List<Map<String, Object>>> reviews = submit("profile.reviews", () -> jdbc.queryForList(bounded("""
+            SELECT r.*, u.name AS reviewer_name, listing_name FROM Reviews r
+            JOIN Users u ON r.reviewer_uid = u.uid
+            JOIN Listings l ON r.listid = l.listid
+            WHERE reviewee_uid = ?
+            """), uid));
+        CompletableFuture<List<Map<String, Object>>> createdListings = submit("profile.createdListings", () -> jdbc.queryForList(bounded("""
+            SELECT l.*
+            FROM Listings l
+            JOIN Posts p ON l.listid = p.listid
+            WHERE p.uid = ?
+            """), uid));
+        CompletableFuture<List<Map<String, Object>>> assignedListings = submit("profile.assignedListings", () -> jdbc.queryForList(bounded("""
+            SELECT l.*
+            FROM Listings l
+            JOIN AssignedTo a ON l.listid = a.listid
+            WHERE a.uid = ?
+            """), uid));
+        CompletableFuture<List<String>> preferences = submit("profile.preferences", () -> jdbc.queryForList(bounded("""
+            SELECT c.category_name
+            FROM InterestedIn i
+            NATURAL JOIN TaskCategories c
+            WHERE i.uid = ?
+            """), String.class, uid));
+
+        // Every section shares one deadline, measured from when they were all submitted
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<String, Object> profile;
+        try {
+            profile = user.get(remaining(deadline), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof EmptyResultDataAccessException) return null;
+            throw new IllegalStateException("Failed to load user " + uid, e.getCause());
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            throw new IllegalStateException("Timed out loading user " + uid, e);
+        }
+
+        List<String> unavailable = new ArrayList<>();
+        profile.put("reviews", section("reviews", reviews, deadline, unavailable, uid));
+        profile.put("created_listings", section("created_listings", createdListings, deadline, unavailable, uid));
+        profile.put("assigned_listings", section("assigned_listings", assignedListings, deadline, unavailable, uid));
+        profile.put("preferences", section("preferences", preferences, deadline, unavailable, uid));
+        if (!unavailable.isEmpty()) profile.put("unavailable", unavailable);
+        return profile;
+    }
+
+    // Lets MySQL abandon a query the caller has already given up on, freeing its connection
+    private String bounded(String select) {
+        return select.replaceFirst("^\\s*SELECT", "SELECT /*+ MAX_EXECUTION_TIME(" + timeoutMillis + ") */");
+    }
+
+    // Named here because the query runs on the pool, outside the request's QueryScope
+    private <T> CompletableFuture<T> submit(String name, Supplier<T> query) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (QueryScope scope = QueryScope.named(name)) {
+                return query.get();
+            }
+        }, executor);
+    }
+
+    private static <T> List<T> section(String name, CompletableFuture<List<T>> future, long deadline,
+                                       List<String> unavailable, int uid) {
+        try {
+            return future.get(remaining(deadline), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Profile section {} failed for user {}: {}", name, uid, e.getCause().getMessage());
+        } catch (TimeoutException e) {
+            logger.warn("Profile section {} timed out for user {}", name, uid);
+        }
+        future.cancel(false);
+        unavailable.add(name);
+        return List.of();
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
@@ -0,0 +1,62 @@
+package com.tungtung.hello;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+// Shared plumbing for the typed row projections (ListingRow, UserRow, ReviewRow): parsing a
+// ?fields= sparse fieldset into the columns to select, and writing nullable numbers.
+public final class Projections {
+
+    // A field a client can ask for: its JSON name and the SQL that selects it
+    public interface Field {
+        String json();
+
+        String sql();
+    }
+
+    private Projections() {
+    }
+
+    // Comma-separated JSON names; null or blank means `defaults`. The key field is always
+    // selected since cursors and edges need it.
+    public static <F extends Enum<F> & Field> Set<F> parse(String fields, Class<F> type, Set<F> defaults, F key) {
+        EnumSet<F> selected = EnumSet.of(key);
+        if (fields == null || fields.isBlank()) {
+            selected.addAll(defaults);
+            return Collections.unmodifiableSet(selected);
+        }
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) continue;
+            F match = null;
+            for (F field : type.getEnumConstants()) {
+                if (field.json().equals(trimmed)) match = field;
+            }
+            if (match == null) {
+                throw new IllegalArgumentException("Unknown field: " + trimmed);
+            }
+            selected.add(match);
+        }
+        return Collections.unmodifiableSet(selected);
+    }
+
+    // The select list, in field order (which is also the order the mappers read columns in)
+    public static String columns(Set<? extends Field> fields) {
+        return fields.stream().map(Field::sql).collect(Collectors.joining(", "));
+    }
+
+    static void writeNumber(JsonGenerator json, Integer value) throws IOException {
+        if (value == null) json.writeNull();
+        else json.writeNumber(value);
+    }
+
+    static void writeNumber(JsonGenerator json, Float value) throws IOException {
+        if (value == null) json.writeNull();
+        else json.writeNumber(value);
+    }
+}
@@ -0,0 +1,37 @@
+package com.tungtung.hello;
+
+// Names the JDBC statements run inside it, for InstrumentedJdbcTemplate's per-query metrics:
+//   try (QueryScope scope = QueryScope.named("profile.reviews")) { jdbc.queryForList(...); }
+// Scopes nest and the innermost wins. The name is per thread, so work handed to a pool
+// has to open its own. Requests run inside one named after their route (EndpointMetrics),
+// so anything not named more precisely is still attributed to its endpoint.
+public final class QueryScope implements AutoCloseable {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private final String previous;
+
+    private QueryScope(String previous) {
+        this.previous = previous;
+    }
+
+    public static QueryScope named(String name) {
+        QueryScope scope = new QueryScope(CURRENT.get());
+        CURRENT.set(name);
+        return scope;
+    }
+
+    public static String current() {
+        String name = CURRENT.get();
+        return name != null ? name : "unnamed";
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.tungtung.hello;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One request, committed by EndpointMetrics when it completes. Shows up in a Flight
+// Recording (jcmd <pid> JFR.start) next to the CPU and allocation samples taken meanwhile.
+@Name("tungtung.Request")
+@Label("Request")
+@Category({"TungTung", "HTTP"})
+@Description("A request, from its first dispatch to the end of its last")
+@StackTrace(false)
+class RequestEvent extends Event {
+
+    @Label("Endpoint")
+    @Description("HTTP method and route, e.g. GET /profile/{uid}")
+    String endpoint;
+
+    // -1 when the request names no user
+    @Label("User ID")
+    @Description("The uid path variable or request parameter, or -1")
+    int uid;
+
+    @Label("Status")
+    int status;
+}
@@ -0,0 +1,106 @@
+package com.tungtung.hello;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+// A Reviews row for /listings/{listid}/reviews
+@JsonSerialize(using = ReviewRow.Serializer.class)
+public record ReviewRow(Set<ReviewRow.Field> fields, int listid, int reviewerUid, int revieweeUid, Integer rating,
+                        String comment, Timestamp timestamp) {
+
+    // In table order; field sets are EnumSets so every row set iterates in this order
+    public enum Field implements Projections.Field {
+        LISTID("listid", "listid"),
+        REVIEWER_UID("reviewer_uid", "reviewer_uid"),
+        REVIEWEE_UID("reviewee_uid", "reviewee_uid"),
+        RATING("rating", "rating"),
+        COMMENT("comment", "comment"),
+        TIMESTAMP("timestamp", "`timestamp`");
+
+        private final String json;
+        private final String sql;
+
+        Field(String json, String sql) {
+            this.json = json;
+            this.sql = sql;
+        }
+
+        @Override
+        public String json() {
+            return json;
+        }
+
+        @Override
+        public String sql() {
+            return sql;
+        }
+    }
+
+    public static final Set<Field> ALL = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+
+    public static Set<Field> parseFields(String fields, Set<Field> defaults) {
+        return Projections.parse(fields, Field.class, defaults, Field.LISTID);
+    }
+
+    public static String select(Set<Field> fields) {
+        return "SELECT " + Projections.columns(fields) + " FROM Reviews";
+    }
+
+    public static RowMapper<ReviewRow> mapper(Set<Field> fields) {
+        return (rs, rowNum) -> {
+            int listid = 0;
+            int reviewerUid = 0;
+            int revieweeUid = 0;
+            Integer rating = null;
+            String comment = null;
+            Timestamp timestamp = null;
+            int column = 1;
+            for (Field field : fields) {
+                switch (field) {
+                    case LISTID -> listid = rs.getInt(column);
+                    case REVIEWER_UID -> reviewerUid = rs.getInt(column);
+                    case REVIEWEE_UID -> revieweeUid = rs.getInt(column);
+                    case RATING -> rating = rs.getObject(column, Integer.class);
+                    case COMMENT -> comment = rs.getString(column);
+                    case TIMESTAMP -> timestamp = rs.getTimestamp(column);
+                }
+                column++;
+            }
+            return new ReviewRow(fields, listid, reviewerUid, revieweeUid, rating, comment, timestamp);
+        };
+    }
+
+    public static final class Serializer extends StdSerializer<ReviewRow> {
+
+        public Serializer() {
+            super(ReviewRow.class);
+        }
+
+        @Override
+        public void serialize(ReviewRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            for (Field field : row.fields()) {
+                json.writeFieldName(field.json());
+                switch (field) {
+                    case LISTID -> json.writeNumber(row.listid());
+                    case REVIEWER_UID -> json.writeNumber(row.reviewerUid());
+                    case REVIEWEE_UID -> json.writeNumber(row.revieweeUid());
+                    case RATING -> Projections.writeNumber(json, row.rating());
+                    case COMMENT -> json.writeString(row.comment());
+                    case TIMESTAMP -> provider.defaultSerializeValue(row.timestamp(), json);
+                }
+            }
+            json.writeEndObject();
+        }
+    }
+}
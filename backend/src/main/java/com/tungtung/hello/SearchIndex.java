@@ -0,0 +1,139 @@
+package com.tungtung.hello;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Inverted index over listing name, description and address. Every query token is
+// matched as a prefix of an indexed term (so typing "plum" finds "plumbing"), all
+// tokens must match, and hits are ranked by field-weighted, IDF-scaled term frequency.
+class SearchIndex {
+
+    // A hit in the name counts more than one in the address or description
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float ADDRESS_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    // Prefix hits rank below whole-word hits
+    private static final double PREFIX_FACTOR = 0.6;
+
+    private final NavigableMap<String, Postings> postingsByTerm = new TreeMap<>();
+    private int documents;
+
+    record Result(BitSet matches, Map<Integer, Double> scores) {}
+
+    void add(int slot, String name, String description, String address) {
+        Map<String, Float> weights = termWeights(name, description, address);
+        for (Map.Entry<String, Float> term : weights.entrySet()) {
+            postingsByTerm.computeIfAbsent(term.getKey(), k -> new Postings()).add(slot, term.getValue());
+        }
+        documents++;
+    }
+
+    void remove(int slot, String name, String description, String address) {
+        for (String term : termWeights(name, description, address).keySet()) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings == null) continue;
+            postings.remove(slot);
+            if (postings.size == 0) postingsByTerm.remove(term);
+        }
+        documents--;
+    }
+
+    // Returns null when the query has no searchable tokens (e.g. only punctuation)
+    Result search(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) return null;
+
+        BitSet matches = null;
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            BitSet tokenMatches = new BitSet();
+            Map<Integer, Double> tokenScores = new HashMap<>();
+            for (Map.Entry<String, Postings> entry : postingsByTerm.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                Postings postings = entry.getValue();
+                double idf = Math.log(1 + (double) documents / postings.size);
+                double factor = entry.getKey().equals(token) ? 1.0 : PREFIX_FACTOR;
+                for (int i = 0; i < postings.size; i++) {
+                    int slot = postings.slots[i];
+                    double tf = postings.weights[i];
+                    // Saturate term frequency so repeating a word doesn't dominate
+                    double score = tf / (tf + 1.2) * idf * factor;
+                    tokenMatches.set(slot);
+                    tokenScores.merge(slot, score, Math::max);
+                }
+            }
+
+            if (matches == null) {
+                matches = tokenMatches;
+            } else {
+                matches.and(tokenMatches);
+            }
+            if (matches.isEmpty()) return new Result(matches, Map.of());
+
+            for (Map.Entry<Integer, Double> score : tokenScores.entrySet()) {
+                if (matches.get(score.getKey())) scores.merge(score.getKey(), score.getValue(), Double::sum);
+            }
+        }
+        // Drop slots that matched early tokens but not later ones
+        BitSet all = matches;
+        scores.keySet().removeIf(slot -> !all.get(slot));
+        return new Result(all, scores);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static Map<String, Float> termWeights(String name, String description, String address) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String token : tokenize(name)) weights.merge(token, NAME_WEIGHT, Float::sum);
+        for (String token : tokenize(address)) weights.merge(token, ADDRESS_WEIGHT, Float::sum);
+        for (String token : tokenize(description)) weights.merge(token, DESCRIPTION_WEIGHT, Float::sum);
+        return weights;
+    }
+
+    private static final class Postings {
+        int[] slots = new int[2];
+        float[] weights = new float[2];
+        int size;
+
+        void add(int slot, float weight) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            slots[size] = slot;
+            weights[size] = weight;
+            size++;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    size--;
+                    slots[i] = slots[size];
+                    weights[i] = weights[size];
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,58 +1,110 @@
 package com.tungtung.hello;
 
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import java.util.HashSet;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import com.github.javafaker.Faker;
 import com.github.javafaker.Address;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
+// Generates a dataset of about 50 * scale users (and ~2.5 listings each). Everything is
+// derived from one random seed: each chunk of rows gets its own Random mixed from the
+// seed, phase and chunk number, so the data is the same however the chunks are scheduled.
+// Chunks are generated on all cores and written as multi-row INSERTs with explicit ids,
+// one phase at a time in foreign key / trigger order.
 public class Seed {
+  // 500 rows x ~10 columns stays well under MySQL's 65535 placeholder limit
+  private static final int ROWS_PER_STATEMENT = 500;
+  private static final int ROWS_PER_CHUNK = 5000;
+  private static final String[] ASSIGNED_STATUSES = {"taken", "completed", "cancelled"};
+  // Seeded users can log in with this. Stored as the legacy SHA-256 (one hash shared by every
+  // row); PasswordHasher upgrades each account to PBKDF2 on its first login.
+  private static final String SEED_PASSWORD = "password";
+
+  public record Phase(String name, long rows, long millis) {
+    public double rowsPerSecond() {
+      return millis == 0 ? rows * 1000.0 : rows * 1000.0 / millis;
+    }
+  }
+
+  // Builds the rows for indexes [from, to) of a phase
+  private interface ChunkGenerator {
+    List<Object[]> rows(int from, int to, Random rnd, Faker faker);
+  }
+
   private final JdbcTemplate jdbc;
-  private Faker faker;
-  private int postingVolume;
-  private Set<Integer> completedTasks;
-  private List<Integer> listToAuthor;
-  private Map<Integer,Integer> listingToUser;
-  private int numCategories;
-  private int numUsers;
+  private final long randomSeed;
+  private final int threads;
+  private final int numCategories;
+  private final int numUsers;
+  private final long now;
+  private final List<Phase> phases = new ArrayList<>();
+  private int phaseNumber = 0;
+  private ExecutorService executor;
+
+  // Filled in by plan(): listing i (listid i + 1) is posted by listingAuthor[i], taken by
+  // listingTaker[i] (0 for nobody) and ends up in listingStatus[i]
+  private int[] listingAuthor;
+  private int[] listingTaker;
+  private String[] listingStatus;
 
   public Seed(JdbcTemplate jdbc) {
+    this(jdbc, 1, System.nanoTime());
+  }
+
+  public Seed(JdbcTemplate jdbc, double scale, long randomSeed) {
+    if (!(scale > 0)) throw new IllegalArgumentException("scale must be positive");
     this.jdbc = jdbc;
-    this.faker = new Faker();
-    this.postingVolume = 0;
-    this.completedTasks = new HashSet<>();
-    this.listToAuthor = new ArrayList<>();
-    this.listingToUser = new HashMap<>();
-    this.numCategories = 10;
-    this.numUsers = 50;
+    this.randomSeed = randomSeed;
+    this.numUsers = Math.max(2, (int) Math.round(50 * scale));
+    // Categories grow slowly; there are only so many distinct category names worth having
+    this.numCategories = (int) Math.min(100, Math.max(10, Math.round(10 * Math.sqrt(scale))));
+    // Generation is CPU-bound but each worker also holds a pooled connection while it inserts
+    this.threads = Math.min(8, Runtime.getRuntime().availableProcessors());
+    this.now = System.currentTimeMillis();
+  }
+
+  public List<Phase> phases() {
+    return Collections.unmodifiableList(phases);
   }
 
   public void populate() {
-    this.clearDb();
-    this.createAccounts();
-    this.createCategories();
-    this.createListings();
-    this.createListingAssignments(); // First assign users to listings
-    this.updateListings();           // Then update statuses (including to "completed")
-    this.createReviews();            // Finally create reviews for completed, assigned listings
+    System.out.println("Seeding " + numUsers + " users, " + numCategories + " categories (seed " + randomSeed + ")");
+    executor = Executors.newFixedThreadPool(threads);
+    try {
+      this.clearDb();
+      this.plan();
+      this.createCategories();
+      this.createAccounts();
+      this.createListings();           // Final statuses and assigned counts, decided by plan()
+      this.createPosts();              // Posts, BelongsTo and AssignedTo need their listings and users
+      this.createListingCategories();
+      this.createListingAssignments();
+      this.createEarnings();           // Credit takers of completed listings
+      this.createReviews();            // Last: the review triggers check Posts, AssignedTo and status
+    } finally {
+      executor.shutdownNow();
+    }
+    long rows = phases.stream().mapToLong(Phase::rows).sum();
+    long millis = phases.stream().mapToLong(Phase::millis).sum();
+    System.out.printf("Seeded %,d rows in %,d ms (%,.0f rows/s)%n", rows, millis, new Phase("total", rows, millis).rowsPerSecond());
   }
 
   public void clearDb() {
     this.jdbc.execute("SET FOREIGN_KEY_CHECKS = 0");
-    
+
     this.jdbc.batchUpdate(
       "TRUNCATE TABLE Users",
       "TRUNCATE TABLE Reviews",
@@ -61,207 +113,306 @@ public class Seed {
       "TRUNCATE TABLE BelongsTo",
       "TRUNCATE TABLE Listings",
       "TRUNCATE TABLE TaskCategories",
-      "TRUNCATE TABLE Posts"
+      "TRUNCATE TABLE Posts",
+      "TRUNCATE TABLE EarningsLedger",
+      "TRUNCATE TABLE UserEarnings",
+      "TRUNCATE TABLE MonthlyEarnings",
+      "TRUNCATE TABLE UserTrust"
     );
-    
+
     this.jdbc.execute("SET FOREIGN_KEY_CHECKS = 1");
-}
+  }
+
+  // Who posts what, who takes what and how it ends up, before anything is written
+  private void plan() {
+    long start = System.currentTimeMillis();
+    SeedPhaseEvent event = beginPhase();
+
+    // 0-5 postings per user, listids handed out in user order
+    int[] postings = new int[numUsers];
+    runChunks(numUsers, ROWS_PER_CHUNK, (from, to, rnd, faker) -> {
+      for (int i = from; i < to; i++) postings[i] = rnd.nextInt(6);
+      return List.of();
+    }, false);
+    int numListings = 0;
+    for (int p : postings) numListings += p;
+    listingAuthor = new int[numListings];
+    for (int user = 0, listing = 0; user < numUsers; user++) {
+      for (int p = 0; p < postings[user]; p++) listingAuthor[listing++] = user + 1;
+    }
+
+    // Each user takes at most one listing that isn't theirs and each listing gets at most
+    // one taker; taken listings then end up taken, completed or cancelled
+    Random rnd = new Random(mix(randomSeed, 0, 0));
+    int[] order = new int[numListings];
+    for (int i = 0; i < numListings; i++) order[i] = i;
+    for (int i = numListings - 1; i > 0; i--) {
+      int j = rnd.nextInt(i + 1);
+      int swap = order[i];
+      order[i] = order[j];
+      order[j] = swap;
+    }
+    listingTaker = new int[numListings];
+    listingStatus = new String[numListings];
+    for (int user = 1; user <= numUsers && user <= numListings; user++) {
+      int listing = order[user - 1];
+      if (listingAuthor[listing] == user) continue;
+      listingTaker[listing] = user;
+      listingStatus[listing] = ASSIGNED_STATUSES[rnd.nextInt(ASSIGNED_STATUSES.length)];
+    }
+    for (int i = 0; i < numListings; i++) {
+      if (listingStatus[i] == null) listingStatus[i] = "open";
+    }
+
+    record(new Phase("plan", numListings, System.currentTimeMillis() - start), event);
+  }
 
+  public void createCategories() {
+    phase("categories", "TaskCategories", "category_id, category_name", 1, 1, (from, to, rnd, faker) -> {
+      Set<String> uniqueCategories = new LinkedHashSet<>();
+      for (int attempts = 0; uniqueCategories.size() < numCategories && attempts < numCategories * 20; attempts++) {
+        uniqueCategories.add(faker.leagueOfLegends().champion());
+      }
+      // Ran out of champions
+      for (int i = uniqueCategories.size(); uniqueCategories.size() < numCategories; i++) {
+        uniqueCategories.add("Category " + (i + 1));
+      }
+      List<Object[]> rows = new ArrayList<>();
+      int id = 1;
+      for (String name : uniqueCategories) rows.add(new Object[] {id++, name});
+      return rows;
+    });
+  }
 
   public void createAccounts() {
-    String sql = """
-      INSERT INTO Users
-        (name, profile_picture, phone_number, email)
-      VALUES (?, ?, ?, ?)
-      """;
-    List<Object[]> userList = new ArrayList<>();
-
-    for (int i = 0; i < numUsers; i++) {
-        String name  = this.faker.name().firstName() + " " + this.faker.name().lastName();
-        String pfp   = this.faker.internet().avatar();
-        String phone = this.faker.phoneNumber().phoneNumber();
-        String email = this.faker.internet().emailAddress();
-
-        userList.add(new Object[]{ name, pfp, phone, email });
+    String password;
+    try {
+      password = Hasher.hashPassword(SEED_PASSWORD);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
     }
+    phase("users", "Users", "uid, name, profile_picture, phone_number, phone_normalized, email, password", numUsers, ROWS_PER_CHUNK,
+      (from, to, rnd, faker) -> {
+        List<Object[]> rows = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+          int uid = i + 1;
+          String name  = faker.name().firstName() + " " + faker.name().lastName();
+          String pfp   = faker.internet().avatar();
+          // Contact details include the uid so they stay unique at any scale
+          String phone = phoneNumber(uid, rnd);
+          String email = faker.internet().emailAddress().replaceFirst("@", "." + uid + "@");
+          rows.add(new Object[] {uid, name, pfp, phone, ContactInfo.normalizePhoneNumber(phone), email, password});
+        }
+        return rows;
+      });
+  }
 
-    this.jdbc.batchUpdate(sql, userList);
+  // A distinct number per uid, written in one of the formats people type
+  private static String phoneNumber(int uid, Random rnd) {
+    int area = 200 + (uid / 10_000_000) % 800;
+    int exchange = (uid / 10_000) % 1000;
+    int line = uid % 10_000;
+    return switch (rnd.nextInt(4)) {
+      case 0 -> String.format("(%03d) %03d-%04d", area, exchange, line);
+      case 1 -> String.format("%03d-%03d-%04d", area, exchange, line);
+      case 2 -> String.format("%03d.%03d.%04d", area, exchange, line);
+      default -> String.format("+1 %03d %03d %04d", area, exchange, line);
+    };
   }
 
   public void createListings() {
-    int postingId = 1;
-    Random rnd = new Random();
-    List<Object[]> listingPosts = new ArrayList<>();
-    List<Object[]> categoryListings = new ArrayList<>();
-    for (int id = 1; id <= numUsers; id++) {
-      int postings = rnd.nextInt(6);
-      for (int posting = 0; posting < postings; posting++, postingId++) {
-        // make posting for user 'id'
-        String postingSql = """
-            INSERT INTO Listings
-              (listing_name, description, capacity, price, duration, address, longitude, latitude, deadline, status)
-            VALUES
-              (?, ?, ?, ?, ?, ?, ?, ?, ?, ?);
-            """;
-
+    String columns = "listid, listing_name, description, capacity, price, duration, address, longitude, latitude, deadline, status, assigned_count";
+    phase("listings", "Listings", columns, listingAuthor.length, ROWS_PER_CHUNK, (from, to, rnd, faker) -> {
+      List<Object[]> rows = new ArrayList<>(to - from);
+      for (int i = from; i < to; i++) {
         int capacity = rnd.nextInt(3) + 1;
         float price = rnd.nextFloat(150) + 3;
         int duration = rnd.nextInt(4) + 1;
-
-        Address address = this.faker.address();
-
-        this.jdbc.update(
-          postingSql, 
-          this.faker.book().title(),
-          this.faker.leagueOfLegends().quote(),
+        // At least a day out, so the deadline trigger always passes
+        long ahead = TimeUnit.DAYS.toMillis(1) + (long) (rnd.nextDouble() * TimeUnit.DAYS.toMillis(364));
+        Address address = faker.address();
+        rows.add(new Object[] {
+          i + 1,
+          faker.book().title(),
+          faker.leagueOfLegends().quote(),
           capacity,
           price,
           duration,
           address.fullAddress(),
           address.longitude(),
           address.latitude(),
-          this.faker.date().future(365, TimeUnit.DAYS),
-          "open"
-        );
-
-        listingPosts.add(new Object[] {postingId, id});
-        this.listToAuthor.add(id);
-
-        // pick categories for each posting
-        int categories = rnd.nextInt(4);  // 0–3 distinct picks
-
-        List<Integer> pool = new ArrayList<>();
-        for (int i = 1; i <= numCategories; i++) pool.add(i);
+          new Timestamp(now + ahead),
+          listingStatus[i],
+          listingTaker[i] == 0 ? 0 : 1
+        });
+      }
+      return rows;
+    });
+  }
 
-        Collections.shuffle(pool, rnd);
+  public void createPosts() {
+    phase("posts", "Posts", "listid, uid", listingAuthor.length, ROWS_PER_CHUNK, (from, to, rnd, faker) -> {
+      List<Object[]> rows = new ArrayList<>(to - from);
+      for (int i = from; i < to; i++) rows.add(new Object[] {i + 1, listingAuthor[i]});
+      return rows;
+    });
+  }
 
-        for (int i = 0; i < categories; i++) {
-          int category = pool.get(i);
-          categoryListings.add(new Object[] {postingId, category});
+  public void createListingCategories() {
+    phase("belongs_to", "BelongsTo", "listid, category_id", listingAuthor.length, ROWS_PER_CHUNK, (from, to, rnd, faker) -> {
+      List<Object[]> rows = new ArrayList<>();
+      int[] pool = new int[numCategories];
+      for (int i = from; i < to; i++) {
+        // 0-3 distinct picks (partial Fisher-Yates)
+        int categories = rnd.nextInt(4);
+        for (int c = 0; c < numCategories; c++) pool[c] = c + 1;
+        for (int c = 0; c < categories; c++) {
+          int pick = c + rnd.nextInt(numCategories - c);
+          int category = pool[pick];
+          pool[pick] = pool[c];
+          pool[c] = category;
+          rows.add(new Object[] {i + 1, category});
         }
       }
-    }
-    String postsSql = "INSERT INTO Posts VALUES(?, ?)";
-    String categoryListSql = "INSERT INTO BelongsTo Values(?, ?)";
-    this.jdbc.batchUpdate(postsSql, listingPosts);
-    this.jdbc.batchUpdate(categoryListSql, categoryListings);
+      return rows;
+    });
+  }
 
-    this.postingVolume = postingId - 1;
+  public void createListingAssignments() {
+    phase("assigned_to", "AssignedTo", "listid, uid", listingAuthor.length, ROWS_PER_CHUNK, (from, to, rnd, faker) -> {
+      List<Object[]> rows = new ArrayList<>();
+      for (int i = from; i < to; i++) {
+        if (listingTaker[i] != 0) rows.add(new Object[] {i + 1, listingTaker[i]});
+      }
+      return rows;
+    });
   }
 
-  public void createCategories() {
-    String sql = "INSERT INTO TaskCategories(category_name) VALUES(?)";
-    
-    Set<String> uniqueCategories = new LinkedHashSet<>();
-    while (uniqueCategories.size() < numCategories) {
-      uniqueCategories.add(this.faker.leagueOfLegends().champion());
+  // Seeded completions have no completion time, so credit them at the deadline
+  public void createEarnings() {
+    long start = System.currentTimeMillis();
+    SeedPhaseEvent event = beginPhase();
+    int rows;
+    try (QueryScope scope = QueryScope.named("seed.earnings")) {
+      rows = this.jdbc.update("""
+        INSERT INTO EarningsLedger (listid, uid, amount, earned_at)
+        SELECT a.listid, a.uid, l.price, COALESCE(l.deadline, l.posting_time)
+        FROM AssignedTo a JOIN Listings l ON l.listid = a.listid
+        WHERE l.status = 'completed'
+        """);
+      rows += this.jdbc.update("INSERT INTO UserEarnings (uid, lifetime_total) SELECT uid, SUM(amount) FROM EarningsLedger GROUP BY uid");
+      rows += this.jdbc.update("""
+        INSERT INTO MonthlyEarnings (uid, month, total)
+        SELECT uid, DATE_FORMAT(earned_at, '%Y-%m-01'), SUM(amount)
+        FROM EarningsLedger
+        GROUP BY uid, DATE_FORMAT(earned_at, '%Y-%m-01')
+        """);
     }
-    
-    List<Object[]> batchArgs = uniqueCategories.stream()
-        .map(name -> new Object[]{ name })
-        .collect(Collectors.toList());
-    
-    this.jdbc.batchUpdate(sql, batchArgs);
+    record(new Phase("earnings", rows, System.currentTimeMillis() - start), event);
   }
 
+  // The poster reviews whoever completed their listing, which is what the review triggers
+  // allow. Each taker has one listing, so no two rows touch the same reviewee's aggregates.
   public void createReviews() {
-    System.out.println("Creating reviews...");
-    System.out.println("Completed tasks: " + this.completedTasks.size());
-    System.out.println("Assigned users: " + this.listingToUser.size());
-    
-    Random rnd = new Random();
-    String sql = "INSERT INTO Reviews(listid, reviewer_uid, reviewee_uid, rating, comment) VALUES(?, ?, ?, ?, ?)";
-    int reviewsCreated = 0;
-    
-    for (int listing : this.completedTasks) {
-        if (this.listingToUser.containsKey(listing)) {
-            int reviewer = listingToUser.get(listing);
-            int reviewee = this.listToAuthor.get(listing - 1);
-            int rating = rnd.nextInt(5) + 1;
-            String comment = this.faker.yoda().quote();
-
-            try {
-                this.jdbc.update(sql, listing, reviewer, reviewee, rating, comment);
-                reviewsCreated++;
-            } catch (Exception e) {
-                System.out.println("Error creating review for listing " + listing + ": " + e.getMessage());
-            }
+    phase("reviews", "Reviews", "listid, reviewer_uid, reviewee_uid, rating, comment", listingAuthor.length, ROWS_PER_CHUNK,
+      (from, to, rnd, faker) -> {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+          if (listingTaker[i] == 0 || !"completed".equals(listingStatus[i])) continue;
+          rows.add(new Object[] {i + 1, listingAuthor[i], listingTaker[i], rnd.nextInt(5) + 1, faker.yoda().quote()});
         }
+        return rows;
+      });
+  }
+
+  // Generates and inserts [0, count) in chunks across the pool and records rows/sec
+  private void phase(String name, String table, String columns, int count, int chunkSize, ChunkGenerator generator) {
+    long start = System.currentTimeMillis();
+    SeedPhaseEvent event = beginPhase();
+    String insert = "INSERT INTO " + table + " (" + columns + ") VALUES ";
+    int width = columns.split(",").length;
+    String query = "seed." + name;
+    long rows = runChunks(count, chunkSize, (from, to, rnd, faker) -> {
+      List<Object[]> chunk = generator.rows(from, to, rnd, faker);
+      try (QueryScope scope = QueryScope.named(query)) {
+        insertRows(insert, width, chunk);
+      }
+      return chunk;
+    }, true);
+    record(new Phase(name, rows, System.currentTimeMillis() - start), event);
+  }
+
+  // A SeedPhaseEvent spanning the phase, for Flight Recordings; record() commits it
+  private static SeedPhaseEvent beginPhase() {
+    SeedPhaseEvent event = new SeedPhaseEvent();
+    event.begin();
+    return event;
+  }
+
+  private void record(Phase phase, SeedPhaseEvent event) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.phase = phase.name();
+      event.rows = phase.rows();
+      event.randomSeed = randomSeed;
+      event.commit();
     }
-    
-    System.out.println("Successfully created " + reviewsCreated + " reviews");
+    phases.add(phase);
+    System.out.printf("Seed %-12s %,10d rows in %,7d ms (%,.0f rows/s)%n", phase.name(), phase.rows(), phase.millis(), phase.rowsPerSecond());
   }
 
-  public void createListingAssignments() {
-    Random rnd = new Random();
-    List<Object[]> listAssigns = new ArrayList<>();
-    
-    String openListingsSql = "SELECT listid FROM Listings WHERE status = 'open'";
-    List<Integer> openListings = jdbc.queryForList(openListingsSql, Integer.class);
-    
-    if (openListings.isEmpty()) {
-        System.out.println("Warning: No open listings available for assignment");
-        return;
+  // Runs the generator over [0, count) in chunks on the pool; returns the number of rows
+  private long runChunks(int count, int chunkSize, ChunkGenerator generator, boolean withFaker) {
+    int phase = ++phaseNumber;
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int from = 0, chunk = 0; from < count; from += chunkSize, chunk++) {
+      int chunkFrom = from;
+      int chunkTo = Math.min(count, from + chunkSize);
+      long chunkSeed = mix(randomSeed, phase, chunk);
+      futures.add(executor.submit(() -> {
+        Random rnd = new Random(chunkSeed);
+        Faker faker = withFaker ? new Faker(new Random(~chunkSeed)) : null;
+        return generator.rows(chunkFrom, chunkTo, rnd, faker).size();
+      }));
     }
-    
-    int assignmentsMade = 0;
-    for (int i = 1; i <= numUsers && assignmentsMade < openListings.size(); i++) {
-        int randomIndex = rnd.nextInt(openListings.size());
-        int picked = openListings.get(randomIndex);
-        
-        if (this.listToAuthor.get(picked - 1) == i) {
-            continue;
-        }
-        
-        this.listingToUser.put(picked, i);
-        listAssigns.add(new Object[] {picked, i});
-        
-        openListings.remove(randomIndex);
-        assignmentsMade++;
+    long rows = 0;
+    try {
+      for (Future<Integer> future : futures) rows += future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Seeding was interrupted", e);
+    } catch (ExecutionException e) {
+      futures.forEach(f -> f.cancel(true));
+      if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+      throw new IllegalStateException(e.getCause());
     }
+    return rows;
+  }
 
-    if (listAssigns.isEmpty()) {
-        System.out.println("Warning: No assignments could be made");
-        return;
+  // INSERT ... VALUES (...), (...), ... with up to ROWS_PER_STATEMENT rows per statement
+  private void insertRows(String insert, int width, List<Object[]> rows) {
+    String tuple = "(" + "?, ".repeat(width - 1) + "?)";
+    String fullSql = null;
+    for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+      int to = Math.min(rows.size(), from + ROWS_PER_STATEMENT);
+      String sql;
+      if (to - from == ROWS_PER_STATEMENT) {
+        if (fullSql == null) fullSql = insert + String.join(", ", Collections.nCopies(ROWS_PER_STATEMENT, tuple));
+        sql = fullSql;
+      } else {
+        sql = insert + String.join(", ", Collections.nCopies(to - from, tuple));
+      }
+      Object[] args = new Object[(to - from) * width];
+      for (int r = from; r < to; r++) System.arraycopy(rows.get(r), 0, args, (r - from) * width, width);
+      this.jdbc.update(sql, args);
     }
-
-    String sql = "INSERT INTO AssignedTo VALUES(?, ?)";
-    this.jdbc.batchUpdate(sql, listAssigns);
-    
-    System.out.println("Created " + assignmentsMade + " listing assignments");
   }
 
-  public void updateListings() {
-    Random rnd = new Random();
-    String[] STATUSES = {
-        "open",
-        "taken", 
-        "completed",
-        "cancelled"
-    };
-    
-    List<Object[]> listUpdates = new ArrayList<>();
-    int completedCount = 0;
-    
-    // Only update listings that are assigned to a user
-    for (int listid : listingToUser.keySet()) {
-        int index = rnd.nextInt(3) + 1; // Skip "open" status (index 0) since we're updating
-        if (index == 2) { // "completed"
-            this.completedTasks.add(listid);
-            completedCount++;
-        }
-        String status = STATUSES[index];
-        listUpdates.add(new Object[]{status, listid});
-    }
-    
-    System.out.println("Marking " + completedCount + " listings as completed");
-    
-    if (!listUpdates.isEmpty()) {
-        String sql = "UPDATE Listings SET status = ? WHERE listid = ?";
-        this.jdbc.batchUpdate(sql, listUpdates);
-        System.out.println("Updated " + listUpdates.size() + " listing statuses");
-    } else {
-        System.out.println("No listings to update");
-    }
+  // SplitMix64 over (seed, phase, chunk), so neighbouring chunks get unrelated streams
+  private static long mix(long seed, int phase, int chunk) {
+    long z = seed + 0x9E3779B97F4A7C15L * ((((long) phase) << 32 | (chunk & 0xFFFFFFFFL)) + 1);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
   }
 }
@@ -0,0 +1,26 @@
+package com.tungtung.hello;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One Seed phase (plan, users, listings, ...), committed by Seed.record()
+@Name("tungtung.SeedPhase")
+@Label("Seed Phase")
+@Category({"TungTung", "Seed"})
+@Description("A phase of Seed.populate(): generating and inserting one table's rows")
+@StackTrace(false)
+class SeedPhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Random Seed")
+    long randomSeed;
+}
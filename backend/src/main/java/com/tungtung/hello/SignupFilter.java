@@ -0,0 +1,171 @@
+package com.tungtung.hello;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+// Signup's "is this email / phone number already registered?" checks. A Bloom filter of
+// every registered email and normalized phone answers most of them without a query: a
+// miss means the value is definitely free. Only possible hits go to MySQL. The filter is
+// built by streaming Users at startup (and after /db/seed), and signup adds each new
+// account. It can still miss a duplicate that MySQL's collation treats as equal (accents,
+// for instance), so the UNIQUE indexes on Users stay the final check.
+@Component
+public class SignupFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignupFilter.class);
+
+    private final JdbcTemplate jdbc;
+    private final double falsePositiveRate;
+    private final long minExpectedKeys;
+
+    // null until the first build finishes; every check goes to MySQL until then
+    private volatile BloomFilter filter;
+    // The filter a rebuild is filling, which add() also writes to so no signup is lost
+    private volatile BloomFilter building;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder definitelyFree = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder taken = new LongAdder();
+    private volatile long lastBuildMillis;
+
+    public SignupFilter(JdbcTemplate jdbc,
+                        @Value("${tungtung.signup-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                        @Value("${tungtung.signup-filter.min-expected-keys:100000}") long minExpectedKeys,
+                        Metrics metrics) {
+        this.jdbc = jdbc;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minExpectedKeys = minExpectedKeys;
+        metrics.gauge("tungtung_signup_filter_keys", "Emails and phone numbers in the signup filter",
+            () -> filter == null ? 0 : filter.keys());
+        metrics.gauge("tungtung_signup_filter_memory_bytes", "Size of the signup filter's bit array",
+            () -> filter == null ? 0 : filter.memoryBytes());
+        metrics.gauge("tungtung_signup_filter_expected_false_positive_rate", "False positive rate implied by the filter's fill",
+            () -> filter == null ? 0 : filter.expectedFalsePositiveRate());
+        metrics.counterFunction("tungtung_signup_filter_checks_total", "Duplicate checks made at signup", checks::sum);
+        metrics.counterFunction("tungtung_signup_filter_skipped_queries_total", "Duplicate checks the filter answered without a query",
+            definitelyFree::sum);
+        metrics.counterFunction("tungtung_signup_filter_false_positives_total", "Free values the filter still sent to MySQL",
+            falsePositives::sum);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Failed to build the signup filter: {}", e.getMessage(), e);
+        }
+    }
+
+    // Sized for four keys per current user, twice the two (email and phone) each has, so
+    // signups have room before the false positive rate climbs
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        try (QueryScope scope = QueryScope.named("signupFilter.rebuild")) {
+            long users = jdbc.queryForObject("SELECT COUNT(*) FROM Users", Long.class);
+            BloomFilter next = BloomFilter.create(Math.max(minExpectedKeys, users * 4), falsePositiveRate);
+            building = next;
+            try {
+                jdbc.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement("SELECT email, phone_normalized FROM Users",
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    // Stream the rows instead of buffering the whole table in the driver
+                    statement.setFetchSize(Integer.MIN_VALUE);
+                    return statement;
+                }, (RowCallbackHandler) rs -> {
+                    String email = rs.getString(1);
+                    String phone = rs.getString(2);
+                    if (email != null) next.put(emailKey(email));
+                    if (phone != null) next.put(phoneKey(phone));
+                });
+                filter = next;
+            } finally {
+                building = null;
+            }
+            lastBuildMillis = System.currentTimeMillis() - start;
+            logger.info("Signup filter built from {} users: {} keys, {} KiB, {} hashes in {} ms",
+                users, next.keys(), next.memoryBytes() / 1024, next.hashes(), lastBuildMillis);
+        }
+    }
+
+    public boolean isEmailTaken(String email) {
+        return isTaken(emailKey(email), "signup.emailTaken", "SELECT COUNT(*) FROM Users WHERE email = ?", email.trim());
+    }
+
+    // Takes the normalized number, as stored in Users.phone_normalized
+    public boolean isPhoneTaken(String normalizedPhone) {
+        return isTaken(phoneKey(normalizedPhone), "signup.phoneTaken", "SELECT COUNT(*) FROM Users WHERE phone_normalized = ?", normalizedPhone);
+    }
+
+    // After a successful insert; either may be null
+    public void add(String email, String normalizedPhone) {
+        for (BloomFilter target : new BloomFilter[] {filter, building}) {
+            if (target == null) continue;
+            if (email != null && !email.isBlank()) target.put(emailKey(email));
+            if (normalizedPhone != null) target.put(phoneKey(normalizedPhone));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        BloomFilter current = filter;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", current != null);
+        stats.put("keys", current == null ? 0 : current.keys());
+        stats.put("bits", current == null ? 0 : current.bits());
+        stats.put("hashes", current == null ? 0 : current.hashes());
+        stats.put("memory_bytes", current == null ? 0 : current.memoryBytes());
+        stats.put("expected_false_positive_rate", current == null ? 0.0 : current.expectedFalsePositiveRate());
+        long negatives = definitelyFree.sum();
+        long falseHits = falsePositives.sum();
+        stats.put("checks", checks.sum());
+        stats.put("skipped_queries", negatives);
+        stats.put("false_positives", falseHits);
+        stats.put("taken", taken.sum());
+        // Of the values that weren't registered, the share the filter still sent to MySQL
+        stats.put("observed_false_positive_rate", negatives + falseHits == 0 ? 0.0 : (double) falseHits / (negatives + falseHits));
+        stats.put("last_build_ms", lastBuildMillis);
+        return stats;
+    }
+
+    private boolean isTaken(String key, String queryName, String sql, String value) {
+        checks.increment();
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(key)) {
+            definitelyFree.increment();
+            return false;
+        }
+        boolean found;
+        try (QueryScope scope = QueryScope.named(queryName)) {
+            found = jdbc.queryForObject(sql, Integer.class, value) > 0;
+        }
+        if (found) {
+            taken.increment();
+        } else if (current != null) {
+            falsePositives.increment();
+        }
+        return found;
+    }
+
+    // Lowercased like MySQL's case-insensitive comparison of Users.email
+    private static String emailKey(String email) {
+        return "email:" + email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String phoneKey(String normalizedPhone) {
+        return "phone:" + normalizedPhone;
+    }
+}
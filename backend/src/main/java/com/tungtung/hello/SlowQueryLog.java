@@ -0,0 +1,271 @@
+package com.tungtung.hello;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PreDestroy;
+
+// Statements slower than tungtung.slow-query.threshold-ms, kept in a fixed-size ring buffer
+// for /admin/slow-queries. Each is stored by its shape (the SQL with literals turned into ?
+// and IN lists collapsed, so filterAndSort's variants group by which filters they use), its
+// bind parameter count and duration; the arguments themselves aren't kept. The first time a
+// shape is slow (and again after explain-interval-ms) a background thread runs EXPLAIN
+// FORMAT=JSON on it with the captured arguments and notes full scans, filesorts and
+// temporary tables. EXPLAIN goes through a plain JdbcTemplate so it isn't timed itself.
+// Queries named with one of tungtung.slow-query.ignore-prefixes (the NDJSON exports, which
+// are meant to run for as long as the download takes) are never recorded.
+@Component
+public class SlowQueryLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final Pattern IN_LIST = Pattern.compile("\\bIN \\(\\?(?:, ?\\?)+\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(?:SELECT|UPDATE|DELETE|WITH)\\b", Pattern.CASE_INSENSITIVE);
+
+    public record SlowQuery(Instant at, String query, String shape, int params, double millis, boolean failed) {}
+
+    // The latest EXPLAIN of a shape, or why there isn't one
+    public record Plan(Instant explainedAt, Set<String> fullScans, boolean filesort, boolean temporary,
+                       JsonNode plan, String error) {}
+
+    private final JdbcTemplate explainJdbc;
+    private final ObjectMapper mapper;
+    private final long thresholdNanos;
+    private final List<String> ignorePrefixes;
+    private final Duration explainInterval;
+    private final AtomicReferenceArray<SlowQuery> entries;
+    private final AtomicLong next = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Cache<String, Plan> plans;
+    private final ThreadPoolExecutor explainer;
+
+    public SlowQueryLog(DataSource dataSource, ObjectMapper mapper,
+                        @Value("${tungtung.slow-query.threshold-ms:200}") long thresholdMillis,
+                        @Value("${tungtung.slow-query.capacity:500}") int capacity,
+                        @Value("${tungtung.slow-query.explain-interval-ms:60000}") long explainIntervalMillis,
+                        @Value("${tungtung.slow-query.ignore-prefixes:export.}") List<String> ignorePrefixes) {
+        this.explainJdbc = new JdbcTemplate(dataSource);
+        this.mapper = mapper;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.ignorePrefixes = List.copyOf(ignorePrefixes);
+        this.explainInterval = Duration.ofMillis(explainIntervalMillis);
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.plans = Caffeine.newBuilder().maximumSize(capacity).build();
+        // One thread is plenty; when it falls behind, further EXPLAINs are skipped
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16), r -> {
+            Thread thread = new Thread(r, "slow-query-explain");
+            thread.setDaemon(true);
+            return thread;
+        }, (r, executor) -> dropped.increment());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+
+    public boolean isSlow(String query, long elapsedNanos) {
+        if (elapsedNanos < thresholdNanos) return false;
+        for (String prefix : ignorePrefixes) {
+            if (query.startsWith(prefix)) return false;
+        }
+        return true;
+    }
+
+    // sql is null when the statement came from a PreparedStatementCreator that doesn't
+    // expose it; args is null unless they went through newArgPreparedStatementSetter
+    public void record(String query, String sql, Object[] args, long elapsedNanos, boolean failed) {
+        String shape = sql != null ? shape(sql) : null;
+        int params = sql != null ? placeholders(sql) : args != null ? args.length : 0;
+        SlowQuery entry = new SlowQuery(Instant.now(), query, shape, params, elapsedNanos / 1e6, failed);
+        entries.set((int) (next.getAndIncrement() % entries.length()), entry);
+        logger.warn("Slow query {} took {} ms: {}", query, String.format("%.1f", entry.millis()), shape);
+
+        if (shape == null || !EXPLAINABLE.matcher(sql).find() || (params > 0 && (args == null || args.length != params))) {
+            return;
+        }
+        Plan previous = plans.getIfPresent(shape);
+        if (previous != null && previous.explainedAt().plus(explainInterval).isAfter(Instant.now())) {
+            return;
+        }
+        // Placeholder so concurrent slow runs of the same shape don't queue more EXPLAINs
+        plans.put(shape, new Plan(Instant.now(), Set.of(), false, false, null, "pending"));
+        explainer.execute(() -> plans.put(shape, explain(sql, args)));
+    }
+
+    public Map<String, Object> report(int limit) {
+        List<SlowQuery> recent = new ArrayList<>();
+        for (int i = 0; i < entries.length(); i++) {
+            SlowQuery entry = entries.get(i);
+            if (entry != null) recent.add(entry);
+        }
+        recent.sort(Comparator.comparing(SlowQuery::at).reversed());
+
+        // Per shape over what's still in the buffer, worst first
+        Map<String, Map<String, Object>> shapes = new LinkedHashMap<>();
+        for (SlowQuery entry : recent) {
+            String key = entry.shape() != null ? entry.shape() : entry.query();
+            Map<String, Object> shape = shapes.computeIfAbsent(key, k -> {
+                Map<String, Object> s = new LinkedHashMap<>();
+                s.put("shape", entry.shape());
+                s.put("query", entry.query());
+                s.put("params", entry.params());
+                s.put("count", 0);
+                s.put("max_ms", 0.0);
+                s.put("last_seen", entry.at());
+                Plan plan = entry.shape() != null ? plans.getIfPresent(entry.shape()) : null;
+                s.put("full_scans", plan != null ? plan.fullScans() : Set.of());
+                s.put("filesort", plan != null && plan.filesort());
+                s.put("temporary_table", plan != null && plan.temporary());
+                s.put("plan", plan != null ? plan.plan() : null);
+                s.put("plan_error", plan != null ? plan.error() : null);
+                return s;
+            });
+            shape.put("count", (Integer) shape.get("count") + 1);
+            shape.put("max_ms", Math.max((Double) shape.get("max_ms"), entry.millis()));
+        }
+        List<Map<String, Object>> byShape = new ArrayList<>(shapes.values());
+        byShape.sort(Comparator.comparing((Map<String, Object> s) -> (Double) s.get("max_ms")).reversed());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("threshold_ms", TimeUnit.NANOSECONDS.toMillis(thresholdNanos));
+        report.put("recorded", next.get());
+        report.put("capacity", entries.length());
+        report.put("explains_skipped", dropped.sum());
+        report.put("shapes", byShape.subList(0, Math.min(limit, byShape.size())));
+        report.put("recent", recent.subList(0, Math.min(limit, recent.size())));
+        return report;
+    }
+
+    private Plan explain(String sql, Object[] args) {
+        try {
+            String json = explainJdbc.queryForObject("EXPLAIN FORMAT=JSON " + sql, String.class, args != null ? args : new Object[0]);
+            JsonNode plan = mapper.readTree(json);
+            Set<String> fullScans = new TreeSet<>();
+            boolean[] flags = new boolean[2];
+            walk(plan, fullScans, flags);
+            return new Plan(Instant.now(), fullScans, flags[0], flags[1], plan, null);
+        } catch (Exception e) {
+            logger.debug("EXPLAIN failed for {}: {}", sql, e.getMessage());
+            return new Plan(Instant.now(), Set.of(), false, false, null, e.getMessage());
+        }
+    }
+
+    // MySQL's JSON plan nests table blocks under query_block, nested_loop, ordering_operation
+    // and so on; the markers we want can be at any depth
+    private static void walk(JsonNode node, Set<String> fullScans, boolean[] flags) {
+        if (node.isObject()) {
+            if ("ALL".equals(node.path("access_type").asText())) {
+                fullScans.add(node.path("table_name").asText("?"));
+            }
+            if (node.path("using_filesort").asBoolean(false)) flags[0] = true;
+            if (node.path("using_temporary_table").asBoolean(false)) flags[1] = true;
+        }
+        for (JsonNode child : node) {
+            walk(child, fullScans, flags);
+        }
+    }
+
+    // Whitespace collapsed, comments dropped, string and number literals replaced by ?,
+    // and IN lists of placeholders collapsed to IN (?, ...)
+    static String shape(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i, c);
+                out.append('?');
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i + 1 < n && sql.charAt(i + 1) != '\n') i++;
+                space(out);
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 1;
+                space(out);
+            } else if (Character.isWhitespace(c)) {
+                space(out);
+            } else if (Character.isDigit(c) && !partOfIdentifier(out)) {
+                while (i + 1 < n && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) i++;
+                out.append('?');
+            } else {
+                out.append(c);
+            }
+        }
+        return IN_LIST.matcher(out.toString().trim()).replaceAll("IN (?, ...)");
+    }
+
+    // Bind parameters: ? outside quotes and comments
+    static int placeholders(String sql) {
+        int count = 0;
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(sql, i, c);
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                while (i + 1 < n && sql.charAt(i + 1) != '\n') i++;
+            } else if (c == '/' && i + 1 < n && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 1;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Index of the closing quote (a doubled quote or a backslash escapes it)
+    private static int skipQuoted(String sql, int start, char quote) {
+        for (int i = start + 1; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+        }
+        return sql.length();
+    }
+
+    private static void space(StringBuilder out) {
+        if (out.length() > 0 && out.charAt(out.length() - 1) != ' ') out.append(' ');
+    }
+
+    private static boolean partOfIdentifier(StringBuilder out) {
+        if (out.length() == 0) return false;
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+}
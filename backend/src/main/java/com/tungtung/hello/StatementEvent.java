@@ -0,0 +1,29 @@
+package com.tungtung.hello;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// One JDBC statement, committed by InstrumentedJdbcTemplate. The query is its QueryScope
+// name, the same one the metrics use. Events land on the thread that ran the statement,
+// so they nest inside that request's RequestEvent (or a pool thread's work).
+@Name("tungtung.Statement")
+@Label("JDBC Statement")
+@Category({"TungTung", "JDBC"})
+@Description("A JDBC statement, including reading its rows")
+@StackTrace(false)
+class StatementEvent extends Event {
+
+    @Label("Query")
+    String query;
+
+    @Label("Rows")
+    @Description("Rows read, or for writes the update count")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+}
@@ -0,0 +1,38 @@
+package com.tungtung.hello;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Bounded selection of the best k items under an ordering, in O(n log k).
+// The heap is inverted so its head is the worst item kept, which is what gets evicted.
+class TopK<T> {
+
+    private final int k;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    TopK(int k, Comparator<? super T> order, int expected) {
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, expected) + 1), order.reversed());
+    }
+
+    void offer(T item) {
+        if (k <= 0) return;
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (order.compare(item, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    // Best first
+    List<T> sorted() {
+        List<T> items = new ArrayList<>(heap);
+        items.sort(order);
+        return items;
+    }
+}
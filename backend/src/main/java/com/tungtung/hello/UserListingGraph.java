@@ -0,0 +1,405 @@
+package com.tungtung.hello;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// The bipartite user-listing graph (Posts and AssignedTo edges) held as compressed sparse
+// rows over int arrays, one adjacency per side. Users and listings get dense indexes;
+// each edge is stored on both sides as (other index << 1 | kind). Neighbourhood queries
+// walk the arrays directly instead of shipping every table to the browser.
+@Component
+public class UserListingGraph {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserListingGraph.class);
+
+    static final int POSTED = 0;
+    static final int ASSIGNED = 1;
+
+    private final JdbcTemplate jdbc;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready = false;
+
+    private Map<Integer, Integer> userIndex = new HashMap<>();
+    private Map<Integer, Integer> listingIndex = new HashMap<>();
+    private IntList uids = new IntList();
+    private IntList listids = new IntList();
+    private Adjacency userEdges = new Adjacency();
+    private Adjacency listingEdges = new Adjacency();
+
+    public UserListingGraph(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Failed to build user-listing graph: {}", e.getMessage(), e);
+        }
+    }
+
+    // Reload everything from MySQL (startup and after /db/seed)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        Map<Integer, Integer> users = new HashMap<>();
+        IntList userIds = new IntList();
+        jdbc.query("SELECT uid FROM Users ORDER BY uid", rs -> {
+            users.put(rs.getInt(1), userIds.size);
+            userIds.add(rs.getInt(1));
+        });
+        Map<Integer, Integer> listings = new HashMap<>();
+        IntList listingIds = new IntList();
+        jdbc.query("SELECT listid FROM Listings ORDER BY listid", rs -> {
+            listings.put(rs.getInt(1), listingIds.size);
+            listingIds.add(rs.getInt(1));
+        });
+
+        // Edges as parallel arrays: user index, listing index, kind
+        IntList edgeUsers = new IntList();
+        IntList edgeListings = new IntList();
+        IntList edgeKinds = new IntList();
+        for (int kind : new int[] {POSTED, ASSIGNED}) {
+            String table = kind == POSTED ? "Posts" : "AssignedTo";
+            jdbc.query("SELECT uid, listid FROM " + table, rs -> {
+                Integer u = users.get(rs.getInt(1));
+                Integer l = listings.get(rs.getInt(2));
+                if (u == null || l == null) return;
+                edgeUsers.add(u);
+                edgeListings.add(l);
+                edgeKinds.add(kind);
+            });
+        }
+
+        Adjacency byUser = Adjacency.build(userIds.size, edgeUsers, edgeListings, edgeKinds);
+        Adjacency byListing = Adjacency.build(listingIds.size, edgeListings, edgeUsers, edgeKinds);
+
+        lock.writeLock().lock();
+        try {
+            userIndex = users;
+            listingIndex = listings;
+            uids = userIds;
+            listids = listingIds;
+            userEdges = byUser;
+            listingEdges = byListing;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        logger.info("User-listing graph built with {} users, {} listings and {} edges in {} ms",
+            userIds.size, listingIds.size, edgeKinds.size, System.currentTimeMillis() - start);
+    }
+
+    public void addUser(int uid) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            userNode(uid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addPosting(int listid, int uid) {
+        addEdge(listid, uid, POSTED);
+    }
+
+    public void addAssignment(int listid, int uid) {
+        addEdge(listid, uid, ASSIGNED);
+    }
+
+    public void removeAssignment(int listid, int uid) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            Integer u = userIndex.get(uid);
+            Integer l = listingIndex.get(listid);
+            if (u == null || l == null) return;
+            userEdges.remove(u, pack(l, ASSIGNED));
+            listingEdges.remove(l, pack(u, ASSIGNED));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addEdge(int listid, int uid, int kind) {
+        if (!ready) return;
+        lock.writeLock().lock();
+        try {
+            int u = userNode(uid);
+            int l = listingNode(listid);
+            if (userEdges.contains(u, pack(l, kind))) return;
+            userEdges.add(u, pack(l, kind));
+            listingEdges.add(l, pack(u, kind));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int userNode(int uid) {
+        Integer u = userIndex.get(uid);
+        if (u != null) return u;
+        userIndex.put(uid, uids.size);
+        uids.add(uid);
+        return userEdges.addNode();
+    }
+
+    private int listingNode(int listid) {
+        Integer l = listingIndex.get(listid);
+        if (l != null) return l;
+        listingIndex.put(listid, listids.size);
+        listids.add(listid);
+        return listingEdges.addNode();
+    }
+
+    // The nodes within `hops` of a user or listing (or the whole graph when both are null),
+    // breadth first, stopping at maxNodes. Edges are those between the returned nodes, as
+    // flat [userPosition, listingPosition, ...] pairs into the users/listings arrays.
+    public Map<String, Object> neighborhood(Integer uid, Integer listid, int hops, int maxNodes) {
+        lock.readLock().lock();
+        try {
+            BitSet usersSeen = new BitSet();
+            BitSet listingsSeen = new BitSet();
+            IntList users = new IntList();
+            IntList listings = new IntList();
+            ArrayDeque<int[]> queue = new ArrayDeque<>();
+            boolean truncated = false;
+
+            List<int[]> starts = new ArrayList<>();
+            if (uid != null || listid != null) {
+                Integer u = uid == null ? null : userIndex.get(uid);
+                Integer l = listid == null ? null : listingIndex.get(listid);
+                if (u != null) starts.add(new int[] {0, u});
+                if (l != null) starts.add(new int[] {1, l});
+            }
+
+            if (uid == null && listid == null) {
+                // Whole graph: every node, in id order, up to the limit
+                for (int u = 0; u < uids.size && users.size + listings.size < maxNodes; u++) visit(0, u, usersSeen, listingsSeen, users, listings);
+                for (int l = 0; l < listids.size && users.size + listings.size < maxNodes; l++) visit(1, l, usersSeen, listingsSeen, users, listings);
+                truncated = users.size + listings.size < uids.size + listids.size;
+            } else {
+                for (int[] start : starts) {
+                    if (users.size + listings.size >= maxNodes) break;
+                    if (visit(start[0], start[1], usersSeen, listingsSeen, users, listings)) {
+                        queue.add(new int[] {start[0], start[1], 0});
+                    }
+                }
+                bfs:
+                while (!queue.isEmpty()) {
+                    int[] node = queue.poll();
+                    if (node[2] >= hops) continue;
+                    Adjacency adjacency = node[0] == 0 ? userEdges : listingEdges;
+                    int from = adjacency.start[node[1]];
+                    int to = from + adjacency.degree[node[1]];
+                    for (int i = from; i < to; i++) {
+                        int side = 1 - node[0];
+                        int neighbor = adjacency.targets[i] >>> 1;
+                        if ((side == 0 ? usersSeen : listingsSeen).get(neighbor)) continue;
+                        if (users.size + listings.size >= maxNodes) {
+                            truncated = true;
+                            break bfs;
+                        }
+                        visit(side, neighbor, usersSeen, listingsSeen, users, listings);
+                        queue.add(new int[] {side, neighbor, node[2] + 1});
+                    }
+                }
+            }
+
+            // Positions of the returned nodes, for the edge pairs
+            Map<Integer, Integer> listingPosition = new HashMap<>(listings.size * 2);
+            for (int i = 0; i < listings.size; i++) listingPosition.put(listings.items[i], i);
+            IntList posted = new IntList();
+            IntList assigned = new IntList();
+            for (int i = 0; i < users.size; i++) {
+                int u = users.items[i];
+                int from = userEdges.start[u];
+                int to = from + userEdges.degree[u];
+                for (int e = from; e < to; e++) {
+                    Integer position = listingPosition.get(userEdges.targets[e] >>> 1);
+                    if (position == null) continue;
+                    IntList edges = (userEdges.targets[e] & 1) == POSTED ? posted : assigned;
+                    edges.add(i);
+                    edges.add(position);
+                }
+            }
+
+            Map<String, Object> graph = new LinkedHashMap<>();
+            graph.put("users", ids(users, uids));
+            graph.put("listings", ids(listings, listids));
+            graph.put("posted", posted.toArray());
+            graph.put("assigned", assigned.toArray());
+            graph.put("truncated", truncated);
+            return graph;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean visit(int side, int index, BitSet usersSeen, BitSet listingsSeen, IntList users, IntList listings) {
+        BitSet seen = side == 0 ? usersSeen : listingsSeen;
+        if (seen.get(index)) return false;
+        seen.set(index);
+        (side == 0 ? users : listings).add(index);
+        return true;
+    }
+
+    private static int[] ids(IntList indexes, IntList idByIndex) {
+        int[] ids = new int[indexes.size];
+        for (int i = 0; i < ids.length; i++) ids[i] = idByIndex.items[indexes.items[i]];
+        return ids;
+    }
+
+    private static int pack(int target, int kind) {
+        return target << 1 | kind;
+    }
+
+    // CSR adjacency with slack: node n's edges are targets[start[n] .. start[n] + degree[n]),
+    // with room for capacity[n]. A node that outgrows its slice moves to the end of the
+    // array; the holes left behind are squeezed out once they make up half the array.
+    static final class Adjacency {
+        private static final int MIN_CAPACITY = 2;
+
+        int[] start = new int[0];
+        int[] degree = new int[0];
+        int[] capacity = new int[0];
+        int[] targets = new int[0];
+        int nodes;
+        int used;
+        int wasted;
+
+        static Adjacency build(int nodes, IntList sources, IntList others, IntList kinds) {
+            Adjacency adjacency = new Adjacency();
+            adjacency.nodes = nodes;
+            adjacency.degree = new int[nodes];
+            adjacency.start = new int[nodes];
+            adjacency.capacity = new int[nodes];
+            for (int i = 0; i < sources.size; i++) adjacency.degree[sources.items[i]]++;
+
+            int offset = 0;
+            for (int n = 0; n < nodes; n++) {
+                adjacency.start[n] = offset;
+                adjacency.capacity[n] = slack(adjacency.degree[n]);
+                offset += adjacency.capacity[n];
+            }
+            adjacency.targets = new int[offset];
+            adjacency.used = offset;
+
+            int[] fill = new int[nodes];
+            for (int i = 0; i < sources.size; i++) {
+                int n = sources.items[i];
+                adjacency.targets[adjacency.start[n] + fill[n]++] = pack(others.items[i], kinds.items[i]);
+            }
+            return adjacency;
+        }
+
+        private static int slack(int degree) {
+            return Math.max(MIN_CAPACITY, degree + (degree >> 2));
+        }
+
+        int addNode() {
+            if (nodes == start.length) {
+                int size = Math.max(16, nodes * 2);
+                start = Arrays.copyOf(start, size);
+                degree = Arrays.copyOf(degree, size);
+                capacity = Arrays.copyOf(capacity, size);
+            }
+            int n = nodes++;
+            start[n] = reserve(MIN_CAPACITY);
+            capacity[n] = MIN_CAPACITY;
+            return n;
+        }
+
+        boolean contains(int node, int packed) {
+            for (int i = start[node], end = start[node] + degree[node]; i < end; i++) {
+                if (targets[i] == packed) return true;
+            }
+            return false;
+        }
+
+        void add(int node, int packed) {
+            if (degree[node] == capacity[node]) {
+                int grown = capacity[node] * 2;
+                int moved = reserve(grown);
+                System.arraycopy(targets, start[node], targets, moved, degree[node]);
+                wasted += capacity[node];
+                start[node] = moved;
+                capacity[node] = grown;
+            }
+            targets[start[node] + degree[node]++] = packed;
+            if (wasted > used / 2) compact();
+        }
+
+        void remove(int node, int packed) {
+            int from = start[node];
+            int last = from + degree[node] - 1;
+            for (int i = from; i <= last; i++) {
+                if (targets[i] == packed) {
+                    targets[i] = targets[last];
+                    degree[node]--;
+                    return;
+                }
+            }
+        }
+
+        private int reserve(int slots) {
+            if (used + slots > targets.length) {
+                targets = Arrays.copyOf(targets, Math.max(used + slots, targets.length * 2));
+            }
+            int at = used;
+            used += slots;
+            return at;
+        }
+
+        private void compact() {
+            int total = 0;
+            for (int n = 0; n < nodes; n++) total += slack(degree[n]);
+            int[] packed = new int[total];
+            int offset = 0;
+            for (int n = 0; n < nodes; n++) {
+                System.arraycopy(targets, start[n], packed, offset, degree[n]);
+                start[n] = offset;
+                capacity[n] = slack(degree[n]);
+                offset += capacity[n];
+            }
+            targets = packed;
+            used = offset;
+            wasted = 0;
+        }
+    }
+
+    static final class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+}
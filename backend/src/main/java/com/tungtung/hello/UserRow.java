@@ -0,0 +1,124 @@
+package com.tungtung.hello;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+// A public Users row for /info/users (never the password). The stars_1..stars_5 columns
+// come back as one rating_histogram field keyed by star count.
+@JsonSerialize(using = UserRow.Serializer.class)
+public record UserRow(Set<UserRow.Field> fields, int uid, String name, String profilePicture, String email,
+                      String phoneNumber, Float overallRating, Integer ratingCount, int[] ratingHistogram) {
+
+    // Field sets are EnumSets so every row set iterates (and selects) in this order
+    public enum Field implements Projections.Field {
+        UID("uid", "uid"),
+        NAME("name", "name"),
+        PROFILE_PICTURE("profile_picture", "profile_picture"),
+        EMAIL("email", "email"),
+        PHONE_NUMBER("phone_number", "phone_number"),
+        OVERALL_RATING("overall_rating", "overall_rating"),
+        RATING_COUNT("rating_count", "rating_count"),
+        RATING_HISTOGRAM("rating_histogram", "stars_1, stars_2, stars_3, stars_4, stars_5");
+
+        private final String json;
+        private final String sql;
+
+        Field(String json, String sql) {
+            this.json = json;
+            this.sql = sql;
+        }
+
+        @Override
+        public String json() {
+            return json;
+        }
+
+        @Override
+        public String sql() {
+            return sql;
+        }
+    }
+
+    public static final Set<Field> ALL = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+
+    public static Set<Field> parseFields(String fields, Set<Field> defaults) {
+        return Projections.parse(fields, Field.class, defaults, Field.UID);
+    }
+
+    public static String select(Set<Field> fields) {
+        return "SELECT " + Projections.columns(fields) + " FROM Users";
+    }
+
+    public static RowMapper<UserRow> mapper(Set<Field> fields) {
+        return (rs, rowNum) -> {
+            int uid = 0;
+            String name = null;
+            String profilePicture = null;
+            String email = null;
+            String phoneNumber = null;
+            Float overallRating = null;
+            Integer ratingCount = null;
+            int[] ratingHistogram = null;
+            int column = 1;
+            for (Field field : fields) {
+                switch (field) {
+                    case UID -> uid = rs.getInt(column);
+                    case NAME -> name = rs.getString(column);
+                    case PROFILE_PICTURE -> profilePicture = rs.getString(column);
+                    case EMAIL -> email = rs.getString(column);
+                    case PHONE_NUMBER -> phoneNumber = rs.getString(column);
+                    case OVERALL_RATING -> overallRating = rs.getObject(column, Float.class);
+                    case RATING_COUNT -> ratingCount = rs.getObject(column, Integer.class);
+                    case RATING_HISTOGRAM -> {
+                        ratingHistogram = new int[5];
+                        for (int stars = 0; stars < 5; stars++) ratingHistogram[stars] = rs.getInt(column + stars);
+                        column += 4;
+                    }
+                }
+                column++;
+            }
+            return new UserRow(fields, uid, name, profilePicture, email, phoneNumber, overallRating, ratingCount, ratingHistogram);
+        };
+    }
+
+    public static final class Serializer extends StdSerializer<UserRow> {
+
+        public Serializer() {
+            super(UserRow.class);
+        }
+
+        @Override
+        public void serialize(UserRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            for (Field field : row.fields()) {
+                json.writeFieldName(field.json());
+                switch (field) {
+                    case UID -> json.writeNumber(row.uid());
+                    case NAME -> json.writeString(row.name());
+                    case PROFILE_PICTURE -> json.writeString(row.profilePicture());
+                    case EMAIL -> json.writeString(row.email());
+                    case PHONE_NUMBER -> json.writeString(row.phoneNumber());
+                    case OVERALL_RATING -> Projections.writeNumber(json, row.overallRating());
+                    case RATING_COUNT -> Projections.writeNumber(json, row.ratingCount());
+                    case RATING_HISTOGRAM -> {
+                        json.writeStartObject();
+                        for (int stars = 0; stars < 5; stars++) {
+                            json.writeNumberField(Integer.toString(stars + 1), row.ratingHistogram()[stars]);
+                        }
+                        json.writeEndObject();
+                    }
+                }
+            }
+            json.writeEndObject();
+        }
+    }
+}
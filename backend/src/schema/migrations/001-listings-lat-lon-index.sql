@@ -0,0 +1,4 @@
+-- Bounding-box index for radius search on /listings/filterAndSort
+USE TungTung;
+
+CREATE INDEX idx_listings_lat_lon ON Listings (latitude, longitude);
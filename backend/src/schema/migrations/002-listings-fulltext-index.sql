@@ -0,0 +1,4 @@
+-- Token index for the search parameter of /listings/filterAndSort
+USE TungTung;
+
+CREATE FULLTEXT INDEX ft_listings_text ON Listings (listing_name, description, address);
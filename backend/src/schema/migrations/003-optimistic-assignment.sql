@@ -0,0 +1,14 @@
+-- Denormalized assignment count for the guarded UPDATE in AssignmentService, which
+-- now does the work of the assignment triggers
+USE TungTung;
+
+ALTER TABLE Listings
+  ADD COLUMN assigned_count INT NOT NULL DEFAULT 0 CHECK (assigned_count >= 0),
+  ADD COLUMN version INT NOT NULL DEFAULT 0;
+
+UPDATE Listings L
+SET L.assigned_count = (SELECT COUNT(*) FROM AssignedTo A WHERE A.listid = L.listid);
+
+DROP TRIGGER IF EXISTS trg_prevent_self_assignment;
+DROP TRIGGER IF EXISTS trg_prevent_taken_or_closed;
+DROP TRIGGER IF EXISTS trg_listing_status_taken;
@@ -0,0 +1,100 @@
+-- Running rating sum/count and star histogram per user, replacing the AVG(rating)
+-- recomputation in trg_update_overall_rating
+USE TungTung;
+
+ALTER TABLE Users
+  ADD COLUMN rating_sum INT NOT NULL DEFAULT 0,
+  ADD COLUMN rating_count INT NOT NULL DEFAULT 0,
+  ADD COLUMN stars_1 INT NOT NULL DEFAULT 0,
+  ADD COLUMN stars_2 INT NOT NULL DEFAULT 0,
+  ADD COLUMN stars_3 INT NOT NULL DEFAULT 0,
+  ADD COLUMN stars_4 INT NOT NULL DEFAULT 0,
+  ADD COLUMN stars_5 INT NOT NULL DEFAULT 0;
+
+UPDATE Users u
+JOIN (
+  SELECT reviewee_uid,
+         SUM(rating) AS rating_sum,
+         COUNT(*) AS rating_count,
+         SUM(rating = 1) AS stars_1,
+         SUM(rating = 2) AS stars_2,
+         SUM(rating = 3) AS stars_3,
+         SUM(rating = 4) AS stars_4,
+         SUM(rating = 5) AS stars_5
+  FROM Reviews
+  GROUP BY reviewee_uid
+) r ON r.reviewee_uid = u.uid
+SET u.rating_sum = r.rating_sum,
+    u.rating_count = r.rating_count,
+    u.stars_1 = r.stars_1,
+    u.stars_2 = r.stars_2,
+    u.stars_3 = r.stars_3,
+    u.stars_4 = r.stars_4,
+    u.stars_5 = r.stars_5,
+    u.overall_rating = r.rating_sum / r.rating_count;
+
+DROP TRIGGER IF EXISTS trg_update_overall_rating;
+
+DELIMITER $$
+
+-- keep the reviewee's rating aggregates in step with Reviews, O(1) per change
+CREATE TRIGGER trg_rating_aggregate_insert
+AFTER INSERT ON Reviews
+FOR EACH ROW
+BEGIN
+  UPDATE Users
+  SET rating_sum = rating_sum + NEW.rating,
+      rating_count = rating_count + 1,
+      stars_1 = stars_1 + (NEW.rating = 1),
+      stars_2 = stars_2 + (NEW.rating = 2),
+      stars_3 = stars_3 + (NEW.rating = 3),
+      stars_4 = stars_4 + (NEW.rating = 4),
+      stars_5 = stars_5 + (NEW.rating = 5),
+      overall_rating = rating_sum / rating_count
+  WHERE uid = NEW.reviewee_uid;
+END$$
+
+CREATE TRIGGER trg_rating_aggregate_update
+AFTER UPDATE ON Reviews
+FOR EACH ROW
+BEGIN
+  UPDATE Users
+  SET rating_sum = rating_sum - OLD.rating,
+      rating_count = rating_count - 1,
+      stars_1 = stars_1 - (OLD.rating = 1),
+      stars_2 = stars_2 - (OLD.rating = 2),
+      stars_3 = stars_3 - (OLD.rating = 3),
+      stars_4 = stars_4 - (OLD.rating = 4),
+      stars_5 = stars_5 - (OLD.rating = 5),
+      overall_rating = IF(rating_count = 0, NULL, rating_sum / rating_count)
+  WHERE uid = OLD.reviewee_uid;
+
+  UPDATE Users
+  SET rating_sum = rating_sum + NEW.rating,
+      rating_count = rating_count + 1,
+      stars_1 = stars_1 + (NEW.rating = 1),
+      stars_2 = stars_2 + (NEW.rating = 2),
+      stars_3 = stars_3 + (NEW.rating = 3),
+      stars_4 = stars_4 + (NEW.rating = 4),
+      stars_5 = stars_5 + (NEW.rating = 5),
+      overall_rating = rating_sum / rating_count
+  WHERE uid = NEW.reviewee_uid;
+END$$
+
+CREATE TRIGGER trg_rating_aggregate_delete
+AFTER DELETE ON Reviews
+FOR EACH ROW
+BEGIN
+  UPDATE Users
+  SET rating_sum = rating_sum - OLD.rating,
+      rating_count = rating_count - 1,
+      stars_1 = stars_1 - (OLD.rating = 1),
+      stars_2 = stars_2 - (OLD.rating = 2),
+      stars_3 = stars_3 - (OLD.rating = 3),
+      stars_4 = stars_4 - (OLD.rating = 4),
+      stars_5 = stars_5 - (OLD.rating = 5),
+      overall_rating = IF(rating_count = 0, NULL, rating_sum / rating_count)
+  WHERE uid = OLD.reviewee_uid;
+END$$
+
+DELIMITER ;
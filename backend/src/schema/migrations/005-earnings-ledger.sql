@@ -0,0 +1,43 @@
+-- Earnings ledger and running totals for /profile/{uid} and /users/{uid}/earnings.
+-- Past completions have no recorded time, so the backfill credits them at the deadline.
+USE TungTung;
+
+-- earnings credited when a listing is completed, one row per assigned user
+CREATE TABLE EarningsLedger (
+  listid INT,
+  uid INT,
+  amount DECIMAL(10,2) NOT NULL,
+  earned_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (listid, uid),
+  INDEX idx_ledger_uid_earned_at (uid, earned_at),
+  FOREIGN KEY (listid) REFERENCES Listings(listid),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+-- running totals over EarningsLedger
+CREATE TABLE UserEarnings (
+  uid INT PRIMARY KEY,
+  lifetime_total DECIMAL(12,2) NOT NULL DEFAULT 0,
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+CREATE TABLE MonthlyEarnings (
+  uid INT,
+  month DATE,
+  total DECIMAL(12,2) NOT NULL DEFAULT 0,
+  PRIMARY KEY (uid, month),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+INSERT INTO EarningsLedger (listid, uid, amount, earned_at)
+SELECT a.listid, a.uid, l.price, COALESCE(l.deadline, l.posting_time)
+FROM AssignedTo a JOIN Listings l ON l.listid = a.listid
+WHERE l.status = 'completed';
+
+INSERT INTO UserEarnings (uid, lifetime_total)
+SELECT uid, SUM(amount) FROM EarningsLedger GROUP BY uid;
+
+INSERT INTO MonthlyEarnings (uid, month, total)
+SELECT uid, DATE_FORMAT(earned_at, '%Y-%m-01'), SUM(amount)
+FROM EarningsLedger
+GROUP BY uid, DATE_FORMAT(earned_at, '%Y-%m-01');
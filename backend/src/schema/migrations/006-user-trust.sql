@@ -0,0 +1,16 @@
+-- Trust scores, components and clusters published by GraphAnalytics
+-- (POST /analytics/trust/run). Empty until the first run.
+USE TungTung;
+
+-- latest GraphAnalytics run; trust_score is scaled so the average user is 1.0
+CREATE TABLE UserTrust (
+  uid INT PRIMARY KEY,
+  trust_score DOUBLE NOT NULL,
+  component_id INT NOT NULL,
+  cluster_id INT NOT NULL,
+  computed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_user_trust_score (trust_score),
+  INDEX idx_user_trust_component (component_id),
+  INDEX idx_user_trust_cluster (cluster_id),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
@@ -0,0 +1,23 @@
+-- Indexed, normalized copy of Users.phone_number so phone login is a point lookup
+-- instead of a REPLACE(...) scan. New rows get it from ContactInfo.normalizePhoneNumber
+-- at signup; this backfills existing rows with the same rules.
+--
+-- Email-only accounts were stored with phone_number = '', so numbers that normalize to
+-- nothing become NULL first. check_contact needs one of the two, so accounts whose email
+-- is blank as well keep their raw number; they just get no phone_normalized (they had no
+-- usable contact to log in with before either). 008 lists them.
+USE TungTung;
+
+UPDATE Users
+SET phone_number = NULL
+WHERE REGEXP_REPLACE(phone_number, '[[:space:]()+-]', '') = ''
+  AND email IS NOT NULL AND TRIM(email) <> '';
+
+ALTER TABLE Users
+  ADD COLUMN phone_normalized VARCHAR(100) AFTER phone_number;
+
+UPDATE Users
+SET phone_normalized = NULLIF(REGEXP_REPLACE(phone_number, '[[:space:]()+-]', ''), '')
+WHERE phone_number IS NOT NULL;
+
+CREATE INDEX idx_users_phone_normalized ON Users (phone_normalized);
@@ -0,0 +1,32 @@
+-- Signup's duplicate checks are now mostly answered by an in-memory Bloom filter
+-- (SignupFilter), so the database has to be the real guard against two accounts with
+-- the same email or phone number.
+--
+-- Blank emails and phone numbers become NULL so email-only and phone-only accounts
+-- don't collide on the unique indexes. Each is only NULLed while the other contact is
+-- still there, as check_contact requires. Databases migrated with 007 as first released
+-- also have phone_normalized = '' on email-only accounts, which is cleared the same way.
+--
+-- Fails if duplicates already exist; resolve those first, e.g. with
+--   SELECT email, COUNT(*) FROM Users GROUP BY email HAVING COUNT(*) > 1;
+USE TungTung;
+
+UPDATE Users
+SET phone_number = NULL, phone_normalized = NULL
+WHERE phone_normalized = '' AND email IS NOT NULL AND TRIM(email) <> '';
+
+UPDATE Users SET phone_normalized = NULL WHERE phone_normalized = '';
+
+UPDATE Users SET email = NULL WHERE TRIM(email) = '' AND phone_number IS NOT NULL;
+
+-- Accounts with no usable contact are left as they are (they can't log in, and the
+-- blank value they keep satisfies check_contact). Listed here for follow-up:
+SELECT uid, name, email, phone_number
+FROM Users
+WHERE (email IS NULL OR TRIM(email) = '') AND phone_normalized IS NULL;
+
+ALTER TABLE Users
+  DROP INDEX idx_users_email,
+  DROP INDEX idx_users_phone_normalized,
+  ADD UNIQUE INDEX idx_users_email (email),
+  ADD UNIQUE INDEX idx_users_phone_normalized (phone_normalized);
@@ -7,13 +7,24 @@ CREATE TABLE Users (
   name VARCHAR(100) NOT NULL,
   profile_picture TEXT,
   phone_number VARCHAR(100),
+  -- phone_number without spaces, hyphens, parentheses or +, which is what phone login matches
+  phone_normalized VARCHAR(100),
   email VARCHAR(100),
   password VARCHAR(100) NOT NULL,
   overall_rating FLOAT DEFAULT NULL,
+  -- Running rating aggregates, maintained by the Reviews triggers
+  rating_sum INT NOT NULL DEFAULT 0,
+  rating_count INT NOT NULL DEFAULT 0,
+  stars_1 INT NOT NULL DEFAULT 0,
+  stars_2 INT NOT NULL DEFAULT 0,
+  stars_3 INT NOT NULL DEFAULT 0,
+  stars_4 INT NOT NULL DEFAULT 0,
+  stars_5 INT NOT NULL DEFAULT 0,
   CONSTRAINT check_contact CHECK (phone_number IS NOT NULL OR email IS NOT NULL),
   CONSTRAINT check_overall_rating CHECK (overall_rating IS NULL OR (overall_rating >= 1.0 AND overall_rating <= 5.0)),
-  INDEX idx_users_email         (email),
-  INDEX idx_users_phone_number  (phone_number)
+  UNIQUE INDEX idx_users_email  (email),
+  INDEX idx_users_phone_number  (phone_number),
+  UNIQUE INDEX idx_users_phone_normalized (phone_normalized)
 );
 
 CREATE TABLE TaskCategories (
@@ -33,7 +44,12 @@ CREATE TABLE Listings (
   latitude DECIMAL(9,6) NOT NULL,
   posting_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   deadline TIMESTAMP,
-  status ENUM('open', 'taken', 'completed', 'cancelled')
+  status ENUM('open', 'taken', 'completed', 'cancelled'),
+  -- Rows in AssignedTo for this listing, kept in step by the assign/unassign endpoints
+  assigned_count INT NOT NULL DEFAULT 0 CHECK (assigned_count >= 0),
+  version INT NOT NULL DEFAULT 0,
+  INDEX idx_listings_lat_lon (latitude, longitude),
+  FULLTEXT INDEX ft_listings_text (listing_name, description, address)
 );
 
 CREATE TABLE BelongsTo (
@@ -85,6 +101,46 @@ CREATE TABLE Reviews (
   UNIQUE unique_review(listid, reviewer_uid, reviewee_uid)
 );
 
+-- earnings credited when a listing is completed, one row per assigned user
+CREATE TABLE EarningsLedger (
+  listid INT,
+  uid INT,
+  amount DECIMAL(10,2) NOT NULL,
+  earned_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (listid, uid),
+  INDEX idx_ledger_uid_earned_at (uid, earned_at),
+  FOREIGN KEY (listid) REFERENCES Listings(listid),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+-- running totals over EarningsLedger
+CREATE TABLE UserEarnings (
+  uid INT PRIMARY KEY,
+  lifetime_total DECIMAL(12,2) NOT NULL DEFAULT 0,
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+CREATE TABLE MonthlyEarnings (
+  uid INT,
+  month DATE,
+  total DECIMAL(12,2) NOT NULL DEFAULT 0,
+  PRIMARY KEY (uid, month),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+-- latest GraphAnalytics run; trust_score is scaled so the average user is 1.0
+CREATE TABLE UserTrust (
+  uid INT PRIMARY KEY,
+  trust_score DOUBLE NOT NULL,
+  component_id INT NOT NULL,
+  cluster_id INT NOT NULL,
+  computed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_user_trust_score (trust_score),
+  INDEX idx_user_trust_component (component_id),
+  INDEX idx_user_trust_cluster (cluster_id),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
 DELIMITER $$
 
 -- enforce deadline >= posting_time + duration
@@ -109,40 +165,6 @@ BEGIN
 END$$
 
 
--- prevent self-assignment
-CREATE TRIGGER trg_prevent_self_assignment
-BEFORE INSERT ON AssignedTo
-FOR EACH ROW
-BEGIN
-  DECLARE listing_owner INT;
-
-  SELECT uid INTO listing_owner
-  FROM Posts
-  WHERE listid = NEW.listid;
-
-  IF listing_owner = NEW.uid THEN
-    SIGNAL SQLSTATE '45000'
-    SET MESSAGE_TEXT = 'User cannot assign themselves to their own listing';
-  END IF;
-END$$
-
--- prevent assignment to closed/taken listings
-CREATE TRIGGER trg_prevent_taken_or_closed
-BEFORE INSERT ON AssignedTo
-FOR EACH ROW
-BEGIN
-  DECLARE listing_status ENUM('open', 'taken', 'completed', 'cancelled');
-
-  SELECT status INTO listing_status
-  FROM Listings
-  WHERE listid = NEW.listid;
-
-  IF listing_status != 'open' THEN
-    SIGNAL SQLSTATE '45000'
-    SET MESSAGE_TEXT = 'Listing is not open for assignment';
-  END IF;
-END$$
-
 -- only assigned users can leave reviews
 CREATE TRIGGER trg_enforce_assigned_reviewer
 BEFORE INSERT ON Reviews
@@ -177,45 +199,66 @@ BEGIN
   END IF;
 END$$
 
--- update listing status to 'taken' when capacity is reached
-CREATE TRIGGER trg_listing_status_taken
-AFTER INSERT ON AssignedTo
+-- keep the reviewee's rating aggregates in step with Reviews, O(1) per change
+CREATE TRIGGER trg_rating_aggregate_insert
+AFTER INSERT ON Reviews
 FOR EACH ROW
 BEGIN
-  DECLARE current_assignments INT;
-  DECLARE max_capacity INT;
-
-  SELECT COUNT(*) INTO current_assignments
-  FROM AssignedTo
-  WHERE listid = NEW.listid;
-
-  SELECT capacity INTO max_capacity
-  FROM Listings
-  WHERE listid = NEW.listid;
-
-  IF current_assignments >= max_capacity THEN
-    UPDATE Listings
-    SET status = 'taken'
-    WHERE listid = NEW.listid AND status = 'open';
-  END IF;
+  UPDATE Users
+  SET rating_sum = rating_sum + NEW.rating,
+      rating_count = rating_count + 1,
+      stars_1 = stars_1 + (NEW.rating = 1),
+      stars_2 = stars_2 + (NEW.rating = 2),
+      stars_3 = stars_3 + (NEW.rating = 3),
+      stars_4 = stars_4 + (NEW.rating = 4),
+      stars_5 = stars_5 + (NEW.rating = 5),
+      overall_rating = rating_sum / rating_count
+  WHERE uid = NEW.reviewee_uid;
 END$$
 
--- update overall_rating after inserting a review
-CREATE TRIGGER trg_update_overall_rating
-AFTER INSERT ON Reviews
+CREATE TRIGGER trg_rating_aggregate_update
+AFTER UPDATE ON Reviews
 FOR EACH ROW
 BEGIN
-  DECLARE avg_rating FLOAT;
-
-  SELECT AVG(rating) INTO avg_rating
-  FROM Reviews
-  WHERE reviewee_uid = NEW.reviewee_uid;
+  UPDATE Users
+  SET rating_sum = rating_sum - OLD.rating,
+      rating_count = rating_count - 1,
+      stars_1 = stars_1 - (OLD.rating = 1),
+      stars_2 = stars_2 - (OLD.rating = 2),
+      stars_3 = stars_3 - (OLD.rating = 3),
+      stars_4 = stars_4 - (OLD.rating = 4),
+      stars_5 = stars_5 - (OLD.rating = 5),
+      overall_rating = IF(rating_count = 0, NULL, rating_sum / rating_count)
+  WHERE uid = OLD.reviewee_uid;
 
   UPDATE Users
-  SET overall_rating = avg_rating
+  SET rating_sum = rating_sum + NEW.rating,
+      rating_count = rating_count + 1,
+      stars_1 = stars_1 + (NEW.rating = 1),
+      stars_2 = stars_2 + (NEW.rating = 2),
+      stars_3 = stars_3 + (NEW.rating = 3),
+      stars_4 = stars_4 + (NEW.rating = 4),
+      stars_5 = stars_5 + (NEW.rating = 5),
+      overall_rating = rating_sum / rating_count
   WHERE uid = NEW.reviewee_uid;
 END$$
 
+CREATE TRIGGER trg_rating_aggregate_delete
+AFTER DELETE ON Reviews
+FOR EACH ROW
+BEGIN
+  UPDATE Users
+  SET rating_sum = rating_sum - OLD.rating,
+      rating_count = rating_count - 1,
+      stars_1 = stars_1 - (OLD.rating = 1),
+      stars_2 = stars_2 - (OLD.rating = 2),
+      stars_3 = stars_3 - (OLD.rating = 3),
+      stars_4 = stars_4 - (OLD.rating = 4),
+      stars_5 = stars_5 - (OLD.rating = 5),
+      overall_rating = IF(rating_count = 0, NULL, rating_sum / rating_count)
+  WHERE uid = OLD.reviewee_uid;
+END$$
+
 
 DELIMITER ;
 
@@ -240,6 +283,13 @@ VALUES
     ('Daisy Patel', NULL, '647-555-3456', NULL, '5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8'),
     ('Evan Wong', NULL, NULL, 'evan@example.com', '5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8');
 
+-- Same rules as ContactInfo.normalizePhoneNumber, which fills this in at signup
+UPDATE Users
+SET
+    phone_normalized = REGEXP_REPLACE(phone_number, '[[:space:]()+-]', '')
+WHERE
+    phone_number IS NOT NULL;
+
 INSERT INTO
     TaskCategories (category_name)
 VALUES
@@ -331,12 +381,30 @@ VALUES
     (2, 5),
     (3, 4);
 
+UPDATE Listings L
+SET
+    L.assigned_count = (SELECT COUNT(*) FROM AssignedTo A WHERE A.listid = L.listid),
+    L.status = IF(L.status = 'open' AND L.assigned_count >= L.capacity, 'taken', L.status);
+
 UPDATE Listings
 SET
     status = 'completed'
 WHERE
     listid = 3;
 
+INSERT INTO EarningsLedger (listid, uid, amount, earned_at)
+SELECT a.listid, a.uid, l.price, COALESCE(l.deadline, l.posting_time)
+FROM AssignedTo a JOIN Listings l ON l.listid = a.listid
+WHERE l.status = 'completed';
+
+INSERT INTO UserEarnings (uid, lifetime_total)
+SELECT uid, SUM(amount) FROM EarningsLedger GROUP BY uid;
+
+INSERT INTO MonthlyEarnings (uid, month, total)
+SELECT uid, DATE_FORMAT(earned_at, '%Y-%m-01'), SUM(amount)
+FROM EarningsLedger
+GROUP BY uid, DATE_FORMAT(earned_at, '%Y-%m-01');
+
 INSERT INTO
     Reviews (
         listid,
@@ -3,13 +3,24 @@ CREATE TABLE Users (
   name VARCHAR(100) NOT NULL,
   profile_picture TEXT,
   phone_number VARCHAR(100),
+  -- phone_number without spaces, hyphens, parentheses or +, which is what phone login matches
+  phone_normalized VARCHAR(100),
   email VARCHAR(100),
   password VARCHAR(100) NOT NULL,
   overall_rating FLOAT DEFAULT NULL,
+  -- Running rating aggregates, maintained by the Reviews triggers
+  rating_sum INT NOT NULL DEFAULT 0,
+  rating_count INT NOT NULL DEFAULT 0,
+  stars_1 INT NOT NULL DEFAULT 0,
+  stars_2 INT NOT NULL DEFAULT 0,
+  stars_3 INT NOT NULL DEFAULT 0,
+  stars_4 INT NOT NULL DEFAULT 0,
+  stars_5 INT NOT NULL DEFAULT 0,
   CONSTRAINT check_contact CHECK (phone_number IS NOT NULL OR email IS NOT NULL),
   CONSTRAINT check_overall_rating CHECK (overall_rating IS NULL OR (overall_rating >= 1.0 AND overall_rating <= 5.0)),
-  INDEX idx_users_email         (email),
-  INDEX idx_users_phone_number  (phone_number)
+  UNIQUE INDEX idx_users_email  (email),
+  INDEX idx_users_phone_number  (phone_number),
+  UNIQUE INDEX idx_users_phone_normalized (phone_normalized)
 );
 
 CREATE TABLE TaskCategories (
@@ -29,7 +40,12 @@ CREATE TABLE Listings (
   latitude DECIMAL(9,6) NOT NULL,
   posting_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
   deadline TIMESTAMP,
-  status ENUM('open', 'taken', 'completed', 'cancelled')
+  status ENUM('open', 'taken', 'completed', 'cancelled'),
+  -- Rows in AssignedTo for this listing, kept in step by the assign/unassign endpoints
+  assigned_count INT NOT NULL DEFAULT 0 CHECK (assigned_count >= 0),
+  version INT NOT NULL DEFAULT 0,
+  INDEX idx_listings_lat_lon (latitude, longitude),
+  FULLTEXT INDEX ft_listings_text (listing_name, description, address)
 );
 
 CREATE TABLE BelongsTo (
@@ -81,3 +97,43 @@ CREATE TABLE Reviews (
   CONSTRAINT check_no_self_review CHECK (reviewer_uid != reviewee_uid),
   UNIQUE unique_review(listid, reviewer_uid, reviewee_uid)
 );
+
+-- earnings credited when a listing is completed, one row per assigned user
+CREATE TABLE EarningsLedger (
+  listid INT,
+  uid INT,
+  amount DECIMAL(10,2) NOT NULL,
+  earned_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (listid, uid),
+  INDEX idx_ledger_uid_earned_at (uid, earned_at),
+  FOREIGN KEY (listid) REFERENCES Listings(listid),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+-- running totals over EarningsLedger
+CREATE TABLE UserEarnings (
+  uid INT PRIMARY KEY,
+  lifetime_total DECIMAL(12,2) NOT NULL DEFAULT 0,
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+CREATE TABLE MonthlyEarnings (
+  uid INT,
+  month DATE,
+  total DECIMAL(12,2) NOT NULL DEFAULT 0,
+  PRIMARY KEY (uid, month),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
+
+-- latest GraphAnalytics run; trust_score is scaled so the average user is 1.0
+CREATE TABLE UserTrust (
+  uid INT PRIMARY KEY,
+  trust_score DOUBLE NOT NULL,
+  component_id INT NOT NULL,
+  cluster_id INT NOT NULL,
+  computed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  INDEX idx_user_trust_score (trust_score),
+  INDEX idx_user_trust_component (component_id),
+  INDEX idx_user_trust_cluster (cluster_id),
+  FOREIGN KEY (uid) REFERENCES Users(uid)
+);
@@ -0,0 +1,293 @@
+package com.tungtung.hello;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Runs against a real MySQL with the TungTung schema and migrations applied, e.g. in a
+// scratch schema TungTungTest (the legacy comparison briefly recreates the old assignment
+// triggers, so it needs the TRIGGER privilege and shouldn't share a live database):
+//   ./mvnw test -Dtest=AssignmentConcurrencyTests -Dtungtung.test.mysql-url=jdbc:mysql://localhost:3306/TungTungTest
+//     -Dtungtung.test.mysql-user=root -Dtungtung.test.mysql-password=...
+// Everything it inserts is removed afterwards, and the triggers are dropped again.
+@EnabledIfSystemProperty(named = "tungtung.test.mysql-url", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AssignmentConcurrencyTests {
+
+	private static final int THREADS = 16;
+	private static final int ASSIGNS_PER_THREAD = 25;
+
+	private DriverManagerDataSource dataSource;
+	private JdbcTemplate jdbc;
+	private DataSourceTransactionManager transactionManager;
+	private AssignmentService assignments;
+	private int posterUid;
+	private final List<Integer> takerUids = new ArrayList<>();
+	private final List<Integer> listids = new ArrayList<>();
+
+	@BeforeAll
+	void setUp() {
+		dataSource = new DriverManagerDataSource(System.getProperty("tungtung.test.mysql-url"),
+			System.getProperty("tungtung.test.mysql-user", "root"), System.getProperty("tungtung.test.mysql-password", ""));
+		jdbc = new JdbcTemplate(dataSource);
+		transactionManager = new DataSourceTransactionManager(dataSource);
+		assignments = new AssignmentService(jdbc, transactionManager, 5, new Metrics());
+
+		posterUid = insertUser("poster");
+		for (int i = 0; i < THREADS * ASSIGNS_PER_THREAD; i++) {
+			takerUids.add(insertUser("taker" + i));
+		}
+	}
+
+	@AfterAll
+	void tearDown() {
+		for (int listid : listids) {
+			jdbc.update("DELETE FROM AssignedTo WHERE listid = ?", listid);
+			jdbc.update("DELETE FROM Posts WHERE listid = ?", listid);
+			jdbc.update("DELETE FROM Listings WHERE listid = ?", listid);
+		}
+		jdbc.update("DELETE FROM Users WHERE uid = ?", posterUid);
+		for (int uid : takerUids) {
+			jdbc.update("DELETE FROM Users WHERE uid = ?", uid);
+		}
+	}
+
+	@Test
+	void fillsToCapacityUnderContention() throws Exception {
+		// Every taker goes for the same listing, so all writers contend on one row
+		int capacity = THREADS * ASSIGNS_PER_THREAD;
+		int listid = insertListing(capacity);
+		Run run = run((id, uid) -> assignments.assign(id, uid).succeeded(), listid);
+
+		assertEquals(capacity, run.assigned());
+		assertEquals(capacity, count(listid));
+		Map<String, Object> listing = jdbc.queryForMap("SELECT status, assigned_count FROM Listings WHERE listid = ?", listid);
+		assertEquals("taken", listing.get("status"));
+		assertEquals(capacity, ((Number) listing.get("assigned_count")).intValue());
+	}
+
+	@Test
+	void optimisticAssignBeatsSerializableUnderContention(TestReporter reporter) throws Exception {
+		int capacity = THREADS * ASSIGNS_PER_THREAD;
+
+		// The old path as it shipped: SERIALIZABLE + FOR UPDATE reads, with the triggers
+		// migration 003 dropped back in place while it runs
+		Run legacy;
+		createLegacyTriggers();
+		try {
+			legacy = run((listid, uid) -> legacyAssign(listid, uid), insertListing(capacity));
+		} finally {
+			dropLegacyTriggers();
+		}
+		Run optimistic = run((listid, uid) -> assignments.assign(listid, uid).succeeded(), insertListing(capacity));
+
+		reporter.publishEntry("serializable", String.format("%d assigned, %d failed, %.0f assigns/s",
+			legacy.assigned(), legacy.failed(), legacy.perSecond()));
+		reporter.publishEntry("guardedUpdate", String.format("%d assigned, %d failed, %.0f assigns/s",
+			optimistic.assigned(), optimistic.failed(), optimistic.perSecond()));
+		assertEquals(capacity, optimistic.assigned());
+		assertTrue(optimistic.perSecond() > legacy.perSecond(), String.format(
+			"Expected the guarded UPDATE (%.0f assigns/s) to out-assign the SERIALIZABLE path (%.0f assigns/s)",
+			optimistic.perSecond(), legacy.perSecond()));
+	}
+
+	@Test
+	void neverOverfillsCapacity() throws Exception {
+		int capacity = 5;
+		int listid = insertListing(capacity);
+		Run run = run((id, uid) -> assignments.assign(id, uid).succeeded(), listid);
+
+		assertEquals(capacity, run.assigned());
+		assertEquals(capacity, count(listid));
+		Map<String, Object> listing = jdbc.queryForMap("SELECT status, assigned_count FROM Listings WHERE listid = ?", listid);
+		assertEquals("taken", listing.get("status"));
+		assertEquals(capacity, ((Number) listing.get("assigned_count")).intValue());
+	}
+
+	@Test
+	void unassignReopensTakenListing() {
+		int listid = insertListing(1);
+		int uid = takerUids.get(0);
+
+		AssignmentService.Result assigned = assignments.assign(listid, uid);
+		assertEquals(AssignmentService.Outcome.ASSIGNED, assigned.outcome());
+		assertEquals("taken", assigned.status());
+		assertEquals(1, assigned.assignedCount());
+		assertEquals(AssignmentService.Outcome.NOT_OPEN, assignments.assign(listid, takerUids.get(1)).outcome());
+		assertEquals(AssignmentService.Outcome.OWN_LISTING, assignments.assign(insertListing(2), posterUid).outcome());
+		AssignmentService.Result unassigned = assignments.unassign(listid, uid);
+		assertEquals(AssignmentService.Outcome.UNASSIGNED, unassigned.outcome());
+		assertEquals("open", unassigned.status());
+		assertEquals(0, unassigned.assignedCount());
+		assertTrue(unassigned.version() > assigned.version());
+		assertEquals(AssignmentService.Outcome.NOT_ASSIGNED, assignments.unassign(listid, uid).outcome());
+
+		Map<String, Object> listing = jdbc.queryForMap("SELECT status, assigned_count FROM Listings WHERE listid = ?", listid);
+		assertEquals("open", listing.get("status"));
+		assertEquals(0, ((Number) listing.get("assigned_count")).intValue());
+	}
+
+	// The assign path as it was before AssignmentService
+	private boolean legacyAssign(int listid, int uid) {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		tx.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+		return tx.execute(status -> {
+			Map<String, Object> listing = jdbc.queryForMap("SELECT status, capacity FROM Listings WHERE listid = ? FOR UPDATE", listid);
+			if (!"open".equals(listing.get("status"))) return false;
+			if (jdbc.queryForObject("SELECT COUNT(*) FROM Posts WHERE listid = ? AND uid = ?", Integer.class, listid, uid) > 0) return false;
+			if (jdbc.queryForObject("SELECT COUNT(*) FROM AssignedTo WHERE listid = ? AND uid = ?", Integer.class, listid, uid) > 0) return false;
+			int assigned = jdbc.queryForObject("SELECT COUNT(*) FROM AssignedTo WHERE listid = ? FOR UPDATE", Integer.class, listid);
+			if (assigned >= ((Number) listing.get("capacity")).intValue()) return false;
+			jdbc.update("INSERT INTO AssignedTo(listid, uid) VALUES (?, ?)", listid, uid);
+			return true;
+		});
+	}
+
+	// As in sample-dataset.sql before migration 003
+	private void createLegacyTriggers() {
+		dropLegacyTriggers();
+		jdbc.execute("""
+			CREATE TRIGGER trg_prevent_self_assignment
+			BEFORE INSERT ON AssignedTo
+			FOR EACH ROW
+			BEGIN
+			  DECLARE listing_owner INT;
+			  SELECT uid INTO listing_owner FROM Posts WHERE listid = NEW.listid;
+			  IF listing_owner = NEW.uid THEN
+			    SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'User cannot assign themselves to their own listing';
+			  END IF;
+			END
+			""");
+		jdbc.execute("""
+			CREATE TRIGGER trg_prevent_taken_or_closed
+			BEFORE INSERT ON AssignedTo
+			FOR EACH ROW
+			BEGIN
+			  DECLARE listing_status ENUM('open', 'taken', 'completed', 'cancelled');
+			  SELECT status INTO listing_status FROM Listings WHERE listid = NEW.listid;
+			  IF listing_status != 'open' THEN
+			    SIGNAL SQLSTATE '45000' SET MESSAGE_TEXT = 'Listing is not open for assignment';
+			  END IF;
+			END
+			""");
+		jdbc.execute("""
+			CREATE TRIGGER trg_listing_status_taken
+			AFTER INSERT ON AssignedTo
+			FOR EACH ROW
+			BEGIN
+			  DECLARE current_assignments INT;
+			  DECLARE max_capacity INT;
+			  SELECT COUNT(*) INTO current_assignments FROM AssignedTo WHERE listid = NEW.listid;
+			  SELECT capacity INTO max_capacity FROM Listings WHERE listid = NEW.listid;
+			  IF current_assignments >= max_capacity THEN
+			    UPDATE Listings SET status = 'taken' WHERE listid = NEW.listid AND status = 'open';
+			  END IF;
+			END
+			""");
+	}
+
+	private void dropLegacyTriggers() {
+		jdbc.execute("DROP TRIGGER IF EXISTS trg_prevent_self_assignment");
+		jdbc.execute("DROP TRIGGER IF EXISTS trg_prevent_taken_or_closed");
+		jdbc.execute("DROP TRIGGER IF EXISTS trg_listing_status_taken");
+	}
+
+	private interface Assigner {
+		boolean assign(int listid, int uid);
+	}
+
+	private record Run(int assigned, int failed, double perSecond) {}
+
+	private Run run(Assigner assigner, int listid) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger assigned = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		for (int t = 0; t < THREADS; t++) {
+			List<Integer> mine = takerUids.subList(t * ASSIGNS_PER_THREAD, (t + 1) * ASSIGNS_PER_THREAD);
+			pool.execute(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int uid : mine) {
+					try {
+						if (assigner.assign(listid, uid)) {
+							assigned.incrementAndGet();
+						} else {
+							failed.incrementAndGet();
+						}
+					} catch (RuntimeException e) {
+						// Deadlocks and lock wait timeouts (the old path doesn't retry them)
+						failed.incrementAndGet();
+					}
+				}
+			});
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		return new Run(assigned.get(), failed.get(), assigned.get() / seconds);
+	}
+
+	private int count(int listid) {
+		return jdbc.queryForObject("SELECT COUNT(*) FROM AssignedTo WHERE listid = ?", Integer.class, listid);
+	}
+
+	private int insertUser(String name) {
+		KeyHolder key = new GeneratedKeyHolder();
+		jdbc.update(connection -> {
+			PreparedStatement insert = connection.prepareStatement(
+				"INSERT INTO Users (name, email, password) VALUES (?, ?, 'x')", Statement.RETURN_GENERATED_KEYS);
+			insert.setString(1, "assign-test " + name);
+			insert.setString(2, "assign-test-" + name + "-" + System.nanoTime() + "@example.com");
+			return insert;
+		}, key);
+		return key.getKey().intValue();
+	}
+
+	private int insertListing(int capacity) {
+		KeyHolder key = new GeneratedKeyHolder();
+		jdbc.update(connection -> {
+			PreparedStatement insert = connection.prepareStatement("""
+				INSERT INTO Listings (listing_name, description, capacity, price, duration, address, longitude, latitude, deadline, status)
+				VALUES ('assign-test', '', ?, 10, 1, 'nowhere', 0, 0, ?, 'open')
+				""", Statement.RETURN_GENERATED_KEYS);
+			insert.setInt(1, capacity);
+			insert.setTimestamp(2, new Timestamp(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(7)));
+			return insert;
+		}, key);
+		int listid = key.getKey().intValue();
+		jdbc.update("INSERT INTO Posts (listid, uid) VALUES (?, ?)", listid, posterUid);
+		listids.add(listid);
+		return listid;
+	}
+}
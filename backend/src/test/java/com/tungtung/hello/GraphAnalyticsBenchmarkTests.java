@@ -0,0 +1,56 @@
+package com.tungtung.hello;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+// Runs GraphAnalytics.compute on a Seed-generated dataset at 1, 2, 4, ... workers up to
+// the core count, and checks every parallelism gives the same answer;
+// benchmarks/GraphAnalyticsBenchmark times them. RESEEDS the target database, so point it
+// at a scratch schema:
+//   ./mvnw test -Dtest=GraphAnalyticsBenchmarkTests -Dtungtung.bench.mysql-url=jdbc:mysql://localhost:3306/TungTungBench
+//     -Dtungtung.bench.mysql-user=root -Dtungtung.bench.mysql-password=... [-Dtungtung.bench.seed-scale=2000]
+@EnabledIfSystemProperty(named = "tungtung.bench.mysql-url", matches = ".+")
+class GraphAnalyticsBenchmarkTests {
+
+	private static final long RANDOM_SEED = 42;
+
+	@Test
+	void computeIsTheSameAtEveryParallelism() {
+		JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(System.getProperty("tungtung.bench.mysql-url"),
+			System.getProperty("tungtung.bench.mysql-user", "root"), System.getProperty("tungtung.bench.mysql-password", "")));
+		double scale = Double.parseDouble(System.getProperty("tungtung.bench.seed-scale", "2000"));
+		new Seed(jdbc, scale, RANDOM_SEED).populate();
+		GraphAnalytics.Snapshot snapshot = GraphAnalytics.load(jdbc);
+
+		List<Integer> parallelisms = new ArrayList<>();
+		for (int p = 1; p < Runtime.getRuntime().availableProcessors(); p *= 2) parallelisms.add(p);
+		parallelisms.add(Runtime.getRuntime().availableProcessors());
+
+		GraphAnalytics.Result baseline = null;
+		for (int parallelism : parallelisms) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				GraphAnalytics.Result result = GraphAnalytics.compute(snapshot, pool);
+				if (baseline == null) {
+					baseline = result;
+				} else {
+					assertArrayEquals(baseline.component, result.component);
+					assertArrayEquals(baseline.cluster, result.cluster);
+					assertArrayEquals(baseline.trust, result.trust, 1e-9);
+					assertEquals(baseline.iterations, result.iterations);
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
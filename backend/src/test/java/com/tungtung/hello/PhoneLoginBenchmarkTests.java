@@ -0,0 +1,81 @@
+package com.tungtung.hello;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+// Phone login's old REPLACE(...) scan against the phone_normalized point lookup, on a
+// Seed dataset of about 1M users by default (seed-scale 20000; expect the seed to take a
+// while). Checks both find the same accounts, that the new query uses its index and that
+// it's the faster one; benchmarks/PhoneLoginBenchmark measures by how much.
+// RESEEDS the target database, so point it at a scratch schema:
+//   ./mvnw test -Dtest=PhoneLoginBenchmarkTests -Dtungtung.bench.mysql-url=jdbc:mysql://localhost:3306/TungTungBench
+//     -Dtungtung.bench.mysql-user=root -Dtungtung.bench.mysql-password=... [-Dtungtung.bench.seed-scale=20000]
+@EnabledIfSystemProperty(named = "tungtung.bench.mysql-url", matches = ".+")
+class PhoneLoginBenchmarkTests {
+
+	private static final String SCAN_SQL = "SELECT uid, password FROM Users WHERE REPLACE(REPLACE(REPLACE(REPLACE(REPLACE(phone_number, ' ', ''), '-', ''), '(', ''), ')', ''), '+', '') = ?";
+	private static final String INDEXED_SQL = "SELECT uid, password FROM Users WHERE phone_normalized = ?";
+	private static final long RANDOM_SEED = 42;
+	// Each scan reads the whole table, so it gets far fewer samples
+	private static final int SCAN_LOOKUPS = 20;
+	private static final int INDEXED_LOOKUPS = 2000;
+	private static final int WARMUP_LOOKUPS = 3;
+
+	@Test
+	void indexedLookupBeatsScan() {
+		JdbcTemplate jdbc = new JdbcTemplate(new DriverManagerDataSource(System.getProperty("tungtung.bench.mysql-url"),
+			System.getProperty("tungtung.bench.mysql-user", "root"), System.getProperty("tungtung.bench.mysql-password", "")));
+		double scale = Double.parseDouble(System.getProperty("tungtung.bench.seed-scale", "20000"));
+		new Seed(jdbc, scale, RANDOM_SEED).populate();
+		jdbc.execute("ANALYZE TABLE Users");
+
+		int users = jdbc.queryForObject("SELECT COUNT(*) FROM Users", Integer.class);
+		Random random = new Random(RANDOM_SEED);
+		List<String> phones = new ArrayList<>();
+		List<Integer> uids = new ArrayList<>();
+		while (phones.size() < INDEXED_LOOKUPS) {
+			int uid = 1 + random.nextInt(users);
+			phones.add(ContactInfo.normalizePhoneNumber(jdbc.queryForObject("SELECT phone_number FROM Users WHERE uid = ?", String.class, uid)));
+			uids.add(uid);
+		}
+
+		Map<String, Object> plan = jdbc.queryForMap("EXPLAIN " + INDEXED_SQL, phones.get(0));
+		assertEquals("idx_users_phone_normalized", plan.get("key"));
+
+		for (int i = 0; i < WARMUP_LOOKUPS; i++) {
+			jdbc.queryForMap(SCAN_SQL, phones.get(i));
+			jdbc.queryForMap(INDEXED_SQL, phones.get(i));
+		}
+		double[] scan = time(jdbc, SCAN_SQL, phones.subList(0, SCAN_LOOKUPS), uids);
+		double[] indexed = time(jdbc, INDEXED_SQL, phones, uids);
+		assertTrue(median(indexed) < median(scan));
+	}
+
+	// Milliseconds per lookup, checking each finds the account the phone was read from
+	private static double[] time(JdbcTemplate jdbc, String sql, List<String> phones, List<Integer> uids) {
+		double[] millis = new double[phones.size()];
+		for (int i = 0; i < phones.size(); i++) {
+			long start = System.nanoTime();
+			Map<String, Object> credentials = jdbc.queryForMap(sql, phones.get(i));
+			millis[i] = (System.nanoTime() - start) / 1e6;
+			assertEquals(uids.get(i), ((Number) credentials.get("uid")).intValue());
+		}
+		Arrays.sort(millis);
+		return millis;
+	}
+
+	private static double median(double[] sorted) {
+		return sorted[sorted.length / 2];
+	}
+}
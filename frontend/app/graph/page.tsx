@@ -7,6 +7,7 @@ import { useUser } from "../UserContext";
 import Link from "next/link";
 import { House } from "lucide-react";
 import * as THREE from "three";
+import { fetchNdjson } from "@/lib/ndjson";
 
 // Custom shader material for realistic glow
 const glowVertexShader = `
@@ -652,9 +653,11 @@ export default function GraphPage() {
         setLoading(true);
         
         // Fetch postings, assignments, and users
-        const postingsRes = await fetch("http://localhost:8080/postings");
-        const assignmentsRes = await fetch("http://localhost:8080/assignments");
-        const usersRes = await fetch("http://localhost:8080/info/users");
+        const [postingsData, assignmentsData, usersData] = await Promise.all([
+          fetchNdjson<any>("http://localhost:8080/postings?format=ndjson"),
+          fetchNdjson<any>("http://localhost:8080/assignments?format=ndjson"),
+          fetchNdjson<any>("http://localhost:8080/info/users?format=ndjson"),
+        ]);
 
         // Fetch listings with match scores
         const params = new URLSearchParams();
@@ -666,14 +669,11 @@ export default function GraphPage() {
         
         const listingsRes = await fetch(`http://localhost:8080/listings/filterAndSort?${params.toString()}`);
 
-        if (!postingsRes.ok || !assignmentsRes.ok || !listingsRes.ok || !usersRes.ok) {
+        if (!listingsRes.ok) {
           throw new Error("Failed to fetch graph data");
         }
 
-        const postingsData = await postingsRes.json();
-        const assignmentsData = await assignmentsRes.json();
         const listingsData = await listingsRes.json();
-        const usersData = await usersRes.json();
 
         setPostings(postingsData);
         setAssignments(assignmentsData);
@@ -4,6 +4,7 @@ import { useEffect, useState } from "react";
 import Link from "next/link";
 import { House } from "lucide-react";
 import { useUser } from "../UserContext";
+import { fetchNdjson } from "@/lib/ndjson";
 
 export default function InfoPage() {
   const { user } = useUser();
@@ -40,9 +41,11 @@ export default function InfoPage() {
         setLoading(true);
         
         // Fetch postings, assignments, and users (original functionality)
-        const postingsRes = await fetch("http://localhost:8080/postings");
-        const assignmentsRes = await fetch("http://localhost:8080/assignments");
-        const usersRes = await fetch("http://localhost:8080/info/users");
+        const [postingsData, assignmentsData, usersData] = await Promise.all([
+          fetchNdjson<any>("http://localhost:8080/postings?format=ndjson"),
+          fetchNdjson<any>("http://localhost:8080/assignments?format=ndjson"),
+          fetchNdjson<any>("http://localhost:8080/info/users?format=ndjson"),
+        ]);
 
         // Fetch listings with match scores (enhanced functionality)
         const params = new URLSearchParams();
@@ -54,14 +57,11 @@ export default function InfoPage() {
         
         const listingsRes = await fetch(`http://localhost:8080/listings/filterAndSort?${params.toString()}`);
 
-        if (!postingsRes.ok || !assignmentsRes.ok || !listingsRes.ok || !usersRes.ok) {
+        if (!listingsRes.ok) {
           throw new Error("Failed to fetch info data");
         }
 
-        const postingsData = await postingsRes.json();
-        const assignmentsData = await assignmentsRes.json();
         const listingsData = await listingsRes.json();
-        const usersData = await usersRes.json();
 
         setPostings(postingsData);
         setAssignments(assignmentsData);
@@ -1,6 +1,6 @@
 "use client";
 
-import { useState, useEffect } from "react";
+import { useState, useEffect, useRef } from "react";
 import Header from "@/components/header";
 import AuthModal from "@/components/auth-modal";
 import CategoryFilters from "@/components/category-filters";
@@ -12,6 +12,10 @@ import type { Listing } from "@/components/listings-container";
 import { useUser } from "./UserContext";
 import { useSearchParams } from "next/navigation";
 
+// Listings are fetched (and hydrated) a page at a time, following X-Next-Cursor until the
+// last page; the backend only hydrates pages of up to 1000
+const LISTINGS_PAGE_SIZE = 200;
+
 export default function Home() {
   const [taskCategories, setTaskCategories] = useState<any[]>([]);
   const [listings, setListings] = useState<any[]>([]);
@@ -104,6 +108,8 @@ export default function Home() {
     }
   }, []);
 
+  const listingsRequest = useRef(0);
+
   const fetchFilteredSortedListings = async (
     selected: string[] = selectedCategories,
     search = searchQuery,
@@ -116,16 +122,32 @@ export default function Home() {
     params.append("uid", user?.uid || "0");
     params.append("latitude", userLocation?.latitude?.toString() || "43.4723");
     params.append("longitude", userLocation?.longitude?.toString() || "-80.5449");
+    params.append("limit", LISTINGS_PAGE_SIZE.toString());
+    params.append("hydrate", "true");
 
+    // A newer search supersedes this one; its pages stop being applied
+    const request = ++listingsRequest.current;
     try {
       setLoading(true);
-      const response = await fetch(`http://localhost:8080/listings/filterAndSort?${params.toString()}`);
-      const data = await response.json();
-      setListings(data);
+      let all: any[] = [];
+      let cursor: string | null = null;
+      do {
+        const pageParams = new URLSearchParams(params);
+        if (cursor) pageParams.append("cursor", cursor);
+        const response = await fetch(`http://localhost:8080/listings/filterAndSort?${pageParams.toString()}`);
+        if (!response.ok) throw new Error(`filterAndSort returned ${response.status}`);
+        const page = await response.json();
+        if (request !== listingsRequest.current) return;
+        all = all.concat(page);
+        setListings(all);
+        // Show the first page while the rest load
+        setLoading(false);
+        cursor = response.headers.get("X-Next-Cursor");
+      } while (cursor);
     } catch (err) {
       console.error("Error fetching listings:", err);
     } finally {
-      setLoading(false);
+      if (request === listingsRequest.current) setLoading(false);
     }
   };
 
@@ -17,6 +17,16 @@ interface Listing {
   address: string;
   deadline: string;
   status: string;
+  // Present when the list was fetched with hydrate=true
+  poster?: UserSummary | null;
+  assigned_users?: UserSummary[];
+  categories?: string[];
+}
+
+interface UserSummary {
+  uid: number;
+  name: string;
+  profile_picture: string;
 }
 
 interface Review {
@@ -47,9 +57,10 @@ export default function ListingCard({
   onStatusUpdate,
 }: ListingCardProps) {
   const [isAssigned, setIsAssigned] = useState(false);
-  const [assignedUsers, setAssignedUsers] = useState<{ uid: number; name: string; profile_picture: string }[]>([]);
-  const [poster, setPoster] = useState<{ uid: number; name: string; profile_picture: string } | null>(null);
-  const [categories, setCategories] = useState<string[]>([]);
+  const [assignedUsers, setAssignedUsers] = useState<UserSummary[]>(listing.assigned_users ?? []);
+  const [poster, setPoster] = useState<UserSummary | null>(listing.poster ?? null);
+  const [categories, setCategories] = useState<string[]>(listing.categories ?? []);
+  const hydrated = listing.assigned_users !== undefined;
 
   const getStatusBadgeColor = (status: string) => {
     switch (status) {
@@ -78,6 +89,11 @@ export default function ListingCard({
   useEffect(() => {
     const checkAssigned = async () => {
       if (!user) return;
+      if (listing.assigned_users) {
+        setAssignedUsers(listing.assigned_users);
+        setIsAssigned(listing.assigned_users.some((u) => u.uid === user.uid));
+        return;
+      }
       try {
         const res = await fetch(`http://localhost:8080/listings/${listing.listid}/assigned-users`);
         const data = await res.json();
@@ -93,11 +109,11 @@ export default function ListingCard({
     };
 
     checkAssigned();
-  }, [user, listing.listid, listing.status]); // Re-check if listing changes
+  }, [user, listing.listid, listing.status, listing.assigned_users]); // Re-check if listing changes
 
   useEffect(() => {
     const fetchPoster = async () => {
-      if (!isExpanded) return;
+      if (!isExpanded || hydrated) return;
       try {
         const res = await fetch(`http://localhost:8080/listings/${listing.listid}/poster`);
         const data = await res.json();
@@ -107,12 +123,12 @@ export default function ListingCard({
       }
     };
     fetchPoster();
-}, [isExpanded, listing.listid]);
+}, [isExpanded, listing.listid, hydrated]);
 
   // Fetch assigned users with name and profile picture when expanded
   useEffect(() => {
     const fetchAssignedUsers = async () => {
-      if (!isExpanded) return;
+      if (!isExpanded || hydrated) return;
       try {
         const res = await fetch(`http://localhost:8080/listings/${listing.listid}/assigned-users`);
         const data = await res.json();
@@ -123,10 +139,11 @@ export default function ListingCard({
       }
     };
     fetchAssignedUsers();
-  }, [isExpanded, listing.listid]);
+  }, [isExpanded, listing.listid, hydrated]);
 
   useEffect(() => {
     const fetchCategories = async () => {
+      if (hydrated) return;
       try {
         const res = await fetch(`http://localhost:8080/listings/${listing.listid}/categories`);
         const data = await res.json();
@@ -136,7 +153,7 @@ export default function ListingCard({
       }
     };
     fetchCategories();
-  }, [listing.listid]);
+  }, [listing.listid, hydrated]);
 
   const handleToggleAssignment = async () => {
     if (!user) return;
@@ -156,14 +173,18 @@ export default function ListingCard({
         // Get updated listing
         const res = await fetch(`http://localhost:8080/listings/${listing.listid}`);
         const updated = await res.json();
-        onStatusUpdate?.(listing.listid, updated); // tell parent
 
         // Re-fetch assigned users immediately
-        const assignedRes = await fetch(`http://localhost:8080/listings/${listing.listid}/assigned-users`);
-        const assignedData = await assignedRes.json();
-        setAssignedUsers(Array.isArray(assignedData) ? assignedData : []);
-        const uids = Array.isArray(assignedData) ? assignedData.map((row: any) => row.uid ?? row) : [];
-        setIsAssigned(uids.includes(user.uid));
+        const hydrateRes = await fetch("http://localhost:8080/listings/hydrate", {
+          method: "POST",
+          headers: { "Content-Type": "application/json" },
+          body: JSON.stringify([listing.listid]),
+        });
+        const details = await hydrateRes.json();
+        const assignedData: UserSummary[] = details[listing.listid]?.assigned_users ?? [];
+        setAssignedUsers(assignedData);
+        setIsAssigned(assignedData.some((u) => u.uid === user.uid));
+        onStatusUpdate?.(listing.listid, { ...updated, ...details[listing.listid] }); // tell parent
 
       } else {
         toast.error(message || `Unable to ${isAssigned ? "unassign from" : "assign to"} task.`);
@@ -0,0 +1,23 @@
+// Fetches a ?format=ndjson endpoint and parses it line by line as it arrives
+export async function fetchNdjson<T>(url: string): Promise<T[]> {
+  const res = await fetch(url)
+  if (!res.ok || !res.body) {
+    throw new Error(`Failed to fetch ${url}`)
+  }
+
+  const rows: T[] = []
+  const reader = res.body.pipeThrough(new TextDecoderStream()).getReader()
+  let buffered = ""
+  while (true) {
+    const { done, value } = await reader.read()
+    if (done) break
+    buffered += value
+    const lines = buffered.split("\n")
+    buffered = lines.pop() ?? ""
+    for (const line of lines) {
+      if (line.trim()) rows.push(JSON.parse(line))
+    }
+  }
+  if (buffered.trim()) rows.push(JSON.parse(buffered))
+  return rows
+}